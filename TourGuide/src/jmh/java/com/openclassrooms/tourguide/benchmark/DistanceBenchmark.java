@@ -0,0 +1,37 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import gpsUtil.location.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RewardsService.getDistance between two locations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceBenchmark {
+    private RewardsService rewardsService;
+    private Location from;
+    private Location to;
+
+    @Setup
+    public void setUp() {
+        rewardsService = new RewardsService(new StubGpsUtil(26, 1), new StubRewardCentral());
+        from = new Location(33.817595, -117.922008);
+        to = new Location(43.582767, -110.821999);
+    }
+
+    @Benchmark
+    public double getDistance() {
+        return rewardsService.getDistance(from, to);
+    }
+}
@@ -0,0 +1,60 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TourGuideService.getNearByAttractions for several catalog sizes, from random locations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NearbyAttractionsBenchmark {
+    private static final int LOCATIONS = 1024;
+
+    @Param({"26", "1000", "10000"})
+    private int catalogSize;
+
+    private TourGuideService tourGuideService;
+    private final VisitedLocation[] visitedLocations = new VisitedLocation[LOCATIONS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        StubGpsUtil gpsUtil = new StubGpsUtil(catalogSize, 1);
+        InternalTestHelper.setInternalUserNumber(0);
+        tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new StubRewardCentral()));
+        tourGuideService.tracker.stopTracking();
+
+        SplittableRandom random = new SplittableRandom(3);
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < LOCATIONS; i++) {
+            visitedLocations[i] = new VisitedLocation(userId,
+                    new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180)), new Date());
+        }
+    }
+
+    @Benchmark
+    public List<Attraction> getNearByAttractions() {
+        next = (next + 1) & (LOCATIONS - 1);
+        return tourGuideService.getNearByAttractions(visitedLocations[next]);
+    }
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Attraction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RewardsService.calculateRewards on a new User, for several history and catalog sizes.
+ * A quarter of the locations are close to an Attraction, the others are anywhere. The User is created for each call,
+ * the allocation reported includes its creation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RewardsServiceBenchmark {
+
+    @Param({"26", "1000", "10000"})
+    private int catalogSize;
+
+    @Param({"10", "100", "1000"})
+    private int historySize;
+
+    private RewardsService rewardsService;
+    private LocationHistory history;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StubGpsUtil gpsUtil = new StubGpsUtil(catalogSize, 1);
+        rewardsService = new RewardsService(gpsUtil, new StubRewardCentral());
+        List<Attraction> attractions = gpsUtil.getAttractions();
+
+        SplittableRandom random = new SplittableRandom(2);
+        history = new LocationHistory(UUID.randomUUID());
+        for (int i = 0; i < historySize; i++) {
+            if (i % 4 == 0) {
+                Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+                history.add(attraction.latitude + random.nextDouble(-0.05, 0.05),
+                        attraction.longitude + random.nextDouble(-0.05, 0.05), i);
+            } else {
+                history.add(random.nextDouble(-85, 85), random.nextDouble(-180, 180), i);
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newUser() {
+        user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.getLocationHistory().addAll(history);
+    }
+
+    @Benchmark
+    public int calculateRewards() {
+        rewardsService.calculateRewards(user);
+        return user.getUserRewards().size();
+    }
+}
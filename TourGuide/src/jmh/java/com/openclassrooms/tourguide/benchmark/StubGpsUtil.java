@@ -0,0 +1,40 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * GpsUtil without the sleeps and the rate limit, with a random catalog of any size.
+ */
+public class StubGpsUtil extends GpsUtil {
+    private final List<Attraction> attractions = new ArrayList<>();
+
+    public StubGpsUtil(int attractionCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < attractionCount; i++) {
+            attractions.add(new Attraction("Attraction " + i, "City", "State",
+                    random.nextDouble(-85, 85), random.nextDouble(-180, 180)));
+        }
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new VisitedLocation(userId, new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180)),
+                new Date());
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return new ArrayList<>(attractions);
+    }
+}
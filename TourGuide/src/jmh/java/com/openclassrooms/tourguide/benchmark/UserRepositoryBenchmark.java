@@ -0,0 +1,50 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TourGuideService.getAllUsers, which copies the users, against an iteration of the view of the UserRepository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UserRepositoryBenchmark {
+
+    @Param({"100000"})
+    private int userNumber;
+
+    private TourGuideService tourGuideService;
+
+    @Setup
+    public void setUp() {
+        StubGpsUtil gpsUtil = new StubGpsUtil(26, 1);
+        InternalTestHelper.setInternalUserNumber(userNumber);
+        InternalTestHelper.setInternalUserSeed(1);
+        tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new StubRewardCentral()));
+        tourGuideService.tracker.stopTracking();
+    }
+
+    @Benchmark
+    public List<User> getAllUsers() {
+        return tourGuideService.getAllUsers();
+    }
+
+    @Benchmark
+    public long streamUsers() {
+        return tourGuideService.streamUsers().count();
+    }
+}
@@ -0,0 +1,86 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User.addUserReward on a User that already has rewardCount rewards: a reward for a new Attraction, and one for an
+ * Attraction the User already has a reward for.
+ * addNewReward needs a new User for each call, the allocation reported for it includes the creation of this User.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserRewardBenchmark {
+
+    @Param({"0", "10", "100", "1000"})
+    private int rewardCount;
+
+    private List<Attraction> attractions;
+    private VisitedLocation visitedLocation;
+    private UserReward newReward;
+    private UserReward existingReward;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        attractions = new StubGpsUtil(rewardCount + 1, 1).getAttractions();
+        visitedLocation = new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date());
+        newReward = new UserReward(visitedLocation, attractions.get(rewardCount), 100);
+        existingReward = new UserReward(visitedLocation, attractions.get(0), 100);
+    }
+
+    User newUser() {
+        User user = new User(visitedLocation.userId, "jon", "000", "jon@tourGuide.com");
+        for (int i = 0; i < rewardCount; i++) {
+            user.addUserReward(new UserReward(visitedLocation, attractions.get(i), 100));
+        }
+        return user;
+    }
+
+    @State(Scope.Thread)
+    public static class NewUser {
+        private User user;
+
+        @Setup(Level.Invocation)
+        public void setUp(UserRewardBenchmark benchmark) {
+            user = benchmark.newUser();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SameUser {
+        private User user;
+
+        @Setup(Level.Trial)
+        public void setUp(UserRewardBenchmark benchmark) {
+            user = benchmark.newUser();
+        }
+    }
+
+    @Benchmark
+    public boolean addNewReward(NewUser state) {
+        return state.user.addUserReward(newReward);
+    }
+
+    @Benchmark
+    public boolean addExistingReward(SameUser state) {
+        return state.user.addUserReward(existingReward);
+    }
+}
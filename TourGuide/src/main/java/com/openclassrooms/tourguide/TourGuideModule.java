@@ -1,28 +1,436 @@
 package com.openclassrooms.tourguide;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.cache.CachedRewardCentral;
+import com.openclassrooms.tourguide.cache.CachedTripPricer;
+import com.openclassrooms.tourguide.executor.BoundedFanOut;
+import com.openclassrooms.tourguide.executor.DeadlineFanOut;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.metrics.TimedGpsUtil;
+import com.openclassrooms.tourguide.metrics.TimedRewardCentral;
+import com.openclassrooms.tourguide.metrics.TimedTripPricer;
+import com.openclassrooms.tourguide.persistence.MappedUserJournal;
+import com.openclassrooms.tourguide.persistence.UserJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshot;
+import com.openclassrooms.tourguide.resilience.AdaptiveLimiter;
+import com.openclassrooms.tourguide.resilience.CircuitBreaker;
+import com.openclassrooms.tourguide.resilience.DependencyGuard;
+import com.openclassrooms.tourguide.resilience.GuardedGpsUtil;
+import com.openclassrooms.tourguide.resilience.GuardedRewardCentral;
+import com.openclassrooms.tourguide.resilience.GuardedTripPricer;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.tracker.LocationUpdatePublisher;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
 
 @Configuration
 public class TourGuideModule {
 	
+	@Value("${tourguide.executor.virtual-threads:false}")
+	private boolean virtualThreads;
+	
+	@Value("${tourguide.executor.tracking.pool-size:" + TourGuideExecutors.DEFAULT_TRACKING_POOL_SIZE + "}")
+	private int trackingPoolSize;
+	
+	@Value("${tourguide.executor.tracking.queue-capacity:" + TourGuideExecutors.DEFAULT_QUEUE_CAPACITY + "}")
+	private int trackingQueueCapacity;
+	
+	@Value("${tourguide.executor.rewards.pool-size:" + TourGuideExecutors.DEFAULT_REWARDS_POOL_SIZE + "}")
+	private int rewardsPoolSize;
+	
+	@Value("${tourguide.executor.rewards.queue-capacity:" + TourGuideExecutors.DEFAULT_QUEUE_CAPACITY + "}")
+	private int rewardsQueueCapacity;
+	
+	@Value("${tourguide.executor.batch.pool-size:" + TourGuideExecutors.DEFAULT_BATCH_POOL_SIZE + "}")
+	private int batchPoolSize;
+	
+	@Value("${tourguide.executor.batch.queue-capacity:" + TourGuideExecutors.DEFAULT_QUEUE_CAPACITY + "}")
+	private int batchQueueCapacity;
+	
+	@Value("${tourguide.executor.web.pool-size:" + TourGuideExecutors.DEFAULT_WEB_POOL_SIZE + "}")
+	private int webPoolSize;
+	
+	@Value("${tourguide.executor.web.queue-capacity:" + TourGuideExecutors.DEFAULT_QUEUE_CAPACITY + "}")
+	private int webQueueCapacity;
+	
+	@Value("${tourguide.executor.prefetch.pool-size:" + TourGuideExecutors.DEFAULT_PREFETCH_POOL_SIZE + "}")
+	private int prefetchPoolSize;
+	
+	@Value("${tourguide.executor.prefetch.queue-capacity:" + TourGuideExecutors.DEFAULT_QUEUE_CAPACITY + "}")
+	private int prefetchQueueCapacity;
+	
+	@Value("${tourguide.executor.points.pool-size:" + TourGuideExecutors.DEFAULT_POINTS_POOL_SIZE + "}")
+	private int pointsPoolSize;
+	
+	@Value("${tourguide.executor.points.queue-capacity:" + TourGuideExecutors.DEFAULT_QUEUE_CAPACITY + "}")
+	private int pointsQueueCapacity;
+	
+	@Value("${tourguide.nearby-attractions.points-timeout-ms:" + DeadlineFanOut.DEFAULT_TIMEOUT_MILLIS + "}")
+	private long nearbyPointsTimeoutMillis;
+	
+	@Value("${tourguide.rewards.cache.maximum-size:" + CachedRewardCentral.DEFAULT_MAXIMUM_SIZE + "}")
+	private long rewardPointsCacheMaximumSize;
+	
+	@Value("${tourguide.rewards.cache.expire-minutes:60}")
+	private long rewardPointsCacheExpireMinutes;
+	
+	@Value("${tourguide.trip-deals.cache.maximum-size:" + CachedTripPricer.DEFAULT_MAXIMUM_SIZE + "}")
+	private long tripDealsCacheMaximumSize;
+	
+	@Value("${tourguide.trip-deals.cache.expire-seconds:600}")
+	private long tripDealsCacheExpireSeconds;
+	
+	@Value("${tourguide.trip-deals.cache.refresh-seconds:60}")
+	private long tripDealsCacheRefreshSeconds;
+	
+	@Value("${tourguide.batch.parallelism:" + BoundedFanOut.DEFAULT_PARALLELISM + "}")
+	private int batchParallelism;
+	
+	@Value("${tourguide.tracker.reward-workers:0}")
+	private int trackerRewardWorkers;
+	
+	@Value("${tourguide.tracker.queue-capacity:" + TrackingPipeline.DEFAULT_QUEUE_CAPACITY + "}")
+	private int trackerQueueCapacity;
+	
+	@Value("${tourguide.locations.pool-size:" + TourGuideExecutors.DEFAULT_LOCATIONS_POOL_SIZE + "}")
+	private int locationsPoolSize;
+	
+	@Value("${tourguide.locations.buffer-capacity:" + LocationUpdatePublisher.DEFAULT_BUFFER_CAPACITY + "}")
+	private int locationsBufferCapacity;
+	
+	@Value("${tourguide.attractions.refresh-seconds:3600}")
+	private long attractionsRefreshSeconds;
+	
+	@Value("${tourguide.limiter.initial-limit:20}")
+	private int limiterInitialLimit;
+	
+	@Value("${tourguide.limiter.min-limit:1}")
+	private int limiterMinLimit;
+	
+	@Value("${tourguide.limiter.max-limit:200}")
+	private int limiterMaxLimit;
+	
+	@Value("${tourguide.limiter.acquire-timeout-ms:5000}")
+	private long limiterAcquireTimeoutMillis;
+	
+	@Value("${tourguide.limiter.gps-util.latency-threshold-ms:2000}")
+	private long gpsUtilLatencyThresholdMillis;
+	
+	@Value("${tourguide.limiter.reward-central.latency-threshold-ms:2000}")
+	private long rewardCentralLatencyThresholdMillis;
+	
+	@Value("${tourguide.limiter.trip-pricer.latency-threshold-ms:2000}")
+	private long tripPricerLatencyThresholdMillis;
+	
+	@Value("${tourguide.circuit.failure-threshold:5}")
+	private int circuitFailureThreshold;
+	
+	@Value("${tourguide.circuit.open-seconds:30}")
+	private long circuitOpenSeconds;
+	
+	@Value("${tourguide.journal.enabled:false}")
+	private boolean journalEnabled;
+	
+	@Value("${tourguide.journal.directory:journal}")
+	private String journalDirectory;
+	
+	@Value("${tourguide.journal.segment-records:" + MappedUserJournal.DEFAULT_SEGMENT_RECORDS + "}")
+	private int journalSegmentRecords;
+	
+	@Value("${tourguide.journal.compaction-threshold:" + MappedUserJournal.DEFAULT_COMPACTION_THRESHOLD + "}")
+	private int journalCompactionThreshold;
+	
+	@Value("${tourguide.journal.queue-capacity:" + MappedUserJournal.DEFAULT_QUEUE_CAPACITY + "}")
+	private int journalQueueCapacity;
+	
+	@Value("${tourguide.snapshot.enabled:false}")
+	private boolean snapshotEnabled;
+	
+	@Value("${tourguide.snapshot.file:snapshot/users.snapshot}")
+	private String snapshotFile;
+	
+	@Value("${tourguide.snapshot.interval-seconds:300}")
+	private long snapshotIntervalSeconds;
+	
+	/**
+	 * GpsUtil whose getUserLocation calls go through the DependencyGuard of gpsUtil, and are timed as
+	 * tourguide.external.calls with the tag service=gpsUtil.
+	 */
+	@Bean
+	public GpsUtil getGpsUtil(MeterRegistry meterRegistry) {
+		return new GuardedGpsUtil(new TimedGpsUtil(new GpsUtil(), meterRegistry),
+				dependencyGuard("gpsUtil", gpsUtilLatencyThresholdMillis, meterRegistry));
+	}
+	
+	/**
+	 * Attraction catalog loaded from gpsUtil, reloaded every tourguide.attractions.refresh-seconds (never when 0). The
+	 * current version is published as the gauge tourguide.attractions.version.
+	 */
+	@Bean(destroyMethod = "close")
+	public AttractionCatalog attractionCatalog(GpsUtil gpsUtil, MeterRegistry meterRegistry) {
+		AttractionCatalog attractionCatalog = new AttractionCatalog(gpsUtil::getAttractions);
+		attractionCatalog.start(attractionsRefreshSeconds);
+		Gauge.builder("tourguide.attractions.version", attractionCatalog, catalog -> catalog.current().getVersion())
+				.description("Version of the attraction catalog in use")
+				.register(meterRegistry);
+		return attractionCatalog;
+	}
+	
 	@Bean
-	public GpsUtil getGpsUtil() {
-		return new GpsUtil();
+	public RewardsService getRewardsService(AttractionCatalog attractionCatalog, RewardCentral rewardCentral,
+			@Qualifier("rewardsExecutor") ExecutorService rewardsExecutor, UserJournal userJournal,
+			MeterRegistry meterRegistry) {
+		return new RewardsService(attractionCatalog, rewardCentral, rewardsExecutor, userJournal, meterRegistry);
 	}
 	
+	/**
+	 * RewardCentral caching the points by Attraction and User, with the cache metrics tagged cache=rewardPoints. The
+	 * calls made on a miss go through the DependencyGuard of rewardCentral, and are timed as tourguide.external.calls
+	 * with the tag service=rewardCentral.
+	 */
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public CachedRewardCentral getRewardCentral(@Qualifier("prefetchExecutor") ExecutorService prefetchExecutor,
+			MeterRegistry meterRegistry) {
+		RewardCentral guarded = new GuardedRewardCentral(new TimedRewardCentral(new RewardCentral(), meterRegistry),
+				dependencyGuard("rewardCentral", rewardCentralLatencyThresholdMillis, meterRegistry));
+		return new CachedRewardCentral(guarded, rewardPointsCacheMaximumSize, Duration.ofMinutes(rewardPointsCacheExpireMinutes), prefetchExecutor,
+				meterRegistry);
 	}
 	
+	/**
+	 * TripPricer caching the deals by User, preferences and reward points, with the cache metrics tagged
+	 * cache=tripDeals. The calls made on a miss or a refresh go through the DependencyGuard of tripPricer, and are
+	 * timed as tourguide.external.calls with the tag service=tripPricer.
+	 */
 	@Bean
-	public RewardCentral getRewardCentral() {
-		return new RewardCentral();
+	public TripPricer getTripPricer(@Qualifier("prefetchExecutor") ExecutorService prefetchExecutor,
+			MeterRegistry meterRegistry) {
+		TripPricer guarded = new GuardedTripPricer(new TimedTripPricer(new TripPricer(), meterRegistry),
+				dependencyGuard("tripPricer", tripPricerLatencyThresholdMillis, meterRegistry));
+		return new CachedTripPricer(guarded, tripDealsCacheMaximumSize,
+				Duration.ofSeconds(tripDealsCacheExpireSeconds), Duration.ofSeconds(tripDealsCacheRefreshSeconds),
+				prefetchExecutor, meterRegistry);
+	}
+	
+	/**
+	 * Executor of the tracking tasks, which wait on gpsUtil. Shut down with the context, its utilisation is
+	 * published as the executor.* metrics with the tag name=tracking.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService trackingExecutor(MeterRegistry meterRegistry) {
+		ExecutorService executor = TourGuideExecutors.newIoExecutor("tracking", trackingPoolSize, trackingQueueCapacity, virtualThreads);
+		return ExecutorServiceMetrics.monitor(meterRegistry, executor, "tracking");
+	}
+	
+	/**
+	 * Executor of the reward workers of the Tracker, one thread per worker. Shut down with the context, which stops
+	 * the workers of a run in progress; its utilisation is published as the executor.* metrics with the tag
+	 * name=tracker-rewards.
+	 */
+	@Bean(destroyMethod = "shutdownNow")
+	public ExecutorService trackerRewardsExecutor(MeterRegistry meterRegistry) {
+		ExecutorService executor = TourGuideExecutors.newIoExecutor("tracker-rewards", trackerRewardWorkers(),
+				TourGuideExecutors.DEFAULT_QUEUE_CAPACITY, virtualThreads);
+		return ExecutorServiceMetrics.monitor(meterRegistry, executor, "tracker-rewards");
+	}
+	
+	/**
+	 * Pipeline of the Tracker: locations fetched on the tracking executor, rewards calculated by its own workers on
+	 * the tracker rewards executor, as many as the threads of the rewards executor unless
+	 * tourguide.tracker.reward-workers is set. The users not yet tracked and the users waiting between the two stages
+	 * are published as the gauges tourguide.tracker.users.pending and tourguide.tracker.queue.depth, the coalesced
+	 * location refreshes as tourguide.tracker.refreshes.coalesced.
+	 */
+	@Bean
+	public TrackingPipeline trackingPipeline(GpsUtil gpsUtil, RewardsService rewardsService, UserJournal userJournal,
+			LocationUpdatePublisher locationUpdatePublisher, @Qualifier("trackingExecutor") ExecutorService trackingExecutor,
+			@Qualifier("trackerRewardsExecutor") ExecutorService trackerRewardsExecutor, MeterRegistry meterRegistry) {
+		TrackingPipeline trackingPipeline = new TrackingPipeline(gpsUtil, rewardsService, userJournal,
+				locationUpdatePublisher, trackingExecutor, trackerRewardsExecutor, trackerRewardWorkers(),
+				trackerQueueCapacity);
+		Gauge.builder("tourguide.tracker.users.pending", trackingPipeline, TrackingPipeline::getPendingUsers)
+				.description("Users given to the Tracker and not yet tracked")
+				.register(meterRegistry);
+		Gauge.builder("tourguide.tracker.queue.depth", trackingPipeline, TrackingPipeline::getQueueDepth)
+				.description("Users waiting between the location and the reward stages of the Tracker")
+				.register(meterRegistry);
+		FunctionCounter.builder("tourguide.tracker.refreshes.coalesced", trackingPipeline, TrackingPipeline::getCoalescedRefreshes)
+				.description("Location refreshes that shared the gpsUtil call of a concurrent refresh of the same User")
+				.register(meterRegistry);
+		return trackingPipeline;
+	}
+	
+	/**
+	 * Journal of the users, their locations and their rewards, replayed on startup. Disabled unless
+	 * tourguide.journal.enabled is set, closed with the context after its pending records are written.
+	 */
+	@Bean(destroyMethod = "close")
+	public UserJournal userJournal() throws IOException {
+		if (!journalEnabled) {
+			return UserJournal.disabled();
+		}
+		return new MappedUserJournal(Path.of(journalDirectory), journalSegmentRecords, journalCompactionThreshold,
+				journalQueueCapacity);
+	}
+	
+	/**
+	 * Snapshot of all the users, restored on startup when the journal has nothing to replay. Written in the background
+	 * every tourguide.snapshot.interval-seconds, and a last time when the context is closed.
+	 */
+	@Bean(destroyMethod = "close")
+	public UserSnapshot userSnapshot() {
+		if (!snapshotEnabled) {
+			return UserSnapshot.disabled();
+		}
+		return new UserSnapshot(Path.of(snapshotFile), snapshotIntervalSeconds);
+	}
+	
+	/**
+	 * Executor of the rewards tasks, which wait on RewardCentral. Shut down with the context, its utilisation is
+	 * published as the executor.* metrics with the tag name=rewards.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService rewardsExecutor(MeterRegistry meterRegistry) {
+		ExecutorService executor = TourGuideExecutors.newIoExecutor("rewards", rewardsPoolSize, rewardsQueueCapacity, virtualThreads);
+		return ExecutorServiceMetrics.monitor(meterRegistry, executor, "rewards");
+	}
+	
+	/**
+	 * Executor of the batch endpoints, shared by all the batches. Shut down with the context, its utilisation is
+	 * published as the executor.* metrics with the tag name=batch.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService batchExecutor(MeterRegistry meterRegistry) {
+		ExecutorService executor = TourGuideExecutors.newIoExecutor("batch", batchPoolSize, batchQueueCapacity, virtualThreads);
+		return ExecutorServiceMetrics.monitor(meterRegistry, executor, "batch");
+	}
+	
+	/**
+	 * Fan-out of the batch endpoints: at most tourguide.batch.parallelism users of one batch processed at a time.
+	 */
+	@Bean
+	public BoundedFanOut batchFanOut(@Qualifier("batchExecutor") ExecutorService batchExecutor) {
+		return new BoundedFanOut(batchExecutor, batchParallelism);
+	}
+	
+	/**
+	 * Executor of the reward points of the nearby attractions, which wait on RewardCentral. Separate from the batch
+	 * executor, whose threads wait on it for the batches of nearby attractions. Its tasks are rejected when its queue
+	 * is full, and their points are unknown, so that a request never fetches them past its deadline itself. Shut down
+	 * with the context, its utilisation is published as the executor.* metrics with the tag name=points.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService pointsExecutor(MeterRegistry meterRegistry) {
+		ExecutorService executor = virtualThreads && TourGuideExecutors.isVirtualThreadSupported()
+				? TourGuideExecutors.newIoExecutor("points", pointsPoolSize, pointsQueueCapacity, true)
+				: TourGuideExecutors.newBestEffortPool("points", pointsPoolSize, pointsQueueCapacity);
+		return ExecutorServiceMetrics.monitor(meterRegistry, executor, "points");
+	}
+	
+	/**
+	 * Fan-out of the reward points of the nearby attractions of one User, within
+	 * tourguide.nearby-attractions.points-timeout-ms. The points not fetched in time are published as
+	 * tourguide.nearby-attractions.points.fallbacks.
+	 */
+	@Bean
+	public DeadlineFanOut pointsFanOut(@Qualifier("pointsExecutor") ExecutorService pointsExecutor,
+			MeterRegistry meterRegistry) {
+		DeadlineFanOut pointsFanOut = new DeadlineFanOut(pointsExecutor, nearbyPointsTimeoutMillis);
+		FunctionCounter.builder("tourguide.nearby-attractions.points.fallbacks", pointsFanOut, DeadlineFanOut::getFallbacks)
+				.description("Reward points of nearby attractions not fetched before the deadline, or failed")
+				.register(meterRegistry);
+		return pointsFanOut;
+	}
+	
+	/**
+	 * Publisher of the live location feed, delivering to each subscriber from the locations executor with a buffer
+	 * of tourguide.locations.buffer-capacity locations. The subscribers and the dropped locations are published as
+	 * tourguide.locations.subscribers and tourguide.locations.dropped.
+	 */
+	@Bean(destroyMethod = "close")
+	public LocationUpdatePublisher locationUpdatePublisher(@Qualifier("locationsExecutor") ExecutorService locationsExecutor,
+			MeterRegistry meterRegistry) {
+		LocationUpdatePublisher locationUpdatePublisher = new LocationUpdatePublisher(locationsExecutor, locationsBufferCapacity);
+		Gauge.builder("tourguide.locations.subscribers", locationUpdatePublisher, LocationUpdatePublisher::getSubscriberCount)
+				.description("Subscribers of the live location feed")
+				.register(meterRegistry);
+		FunctionCounter.builder("tourguide.locations.dropped", locationUpdatePublisher, LocationUpdatePublisher::getDropped)
+				.description("Locations not delivered to a subscriber of the live location feed, its buffer or the executor being full")
+				.register(meterRegistry);
+		return locationUpdatePublisher;
+	}
+	
+	/**
+	 * Executor sending the live location feed to its subscribers. Its tasks are rejected, and the locations dropped,
+	 * when its queue is full, so that the tracking never sends to a client itself. Shut down with the context, its
+	 * utilisation is published as the executor.* metrics with the tag name=locations.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService locationsExecutor(MeterRegistry meterRegistry) {
+		ExecutorService executor = TourGuideExecutors.newBestEffortPool("locations", locationsPoolSize,
+				TourGuideExecutors.DEFAULT_QUEUE_CAPACITY);
+		return ExecutorServiceMetrics.monitor(meterRegistry, executor, "locations");
+	}
+	
+	/**
+	 * Executor of the asynchronous endpoints, which wait on gpsUtil, RewardCentral and TripPricer instead of the
+	 * servlet threads. Its tasks are rejected when its queue is full, and the request is answered with 503, so that a
+	 * servlet thread never makes the calls itself. Shut down with the context, its utilisation is published as the
+	 * executor.* metrics with the tag name=web.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService webExecutor(MeterRegistry meterRegistry) {
+		ExecutorService executor = virtualThreads && TourGuideExecutors.isVirtualThreadSupported()
+				? TourGuideExecutors.newIoExecutor("web", webPoolSize, webQueueCapacity, true)
+				: TourGuideExecutors.newBestEffortPool("web", webPoolSize, webQueueCapacity);
+		return ExecutorServiceMetrics.monitor(meterRegistry, executor, "web");
+	}
+	
+	/**
+	 * Executor prefetching the reward points of the nearby attractions of the tracked users, and refreshing the
+	 * cached trip deals. The tasks are rejected, and skipped, when its queue is full. Shut down with the context, its
+	 * utilisation is published as the executor.* metrics with the tag name=prefetch.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService prefetchExecutor(MeterRegistry meterRegistry) {
+		ExecutorService executor = TourGuideExecutors.newBestEffortPool("prefetch", prefetchPoolSize, prefetchQueueCapacity);
+		return ExecutorServiceMetrics.monitor(meterRegistry, executor, "prefetch");
+	}
+	
+	/**
+	 * Number of reward workers of the Tracker: tourguide.tracker.reward-workers, or the size of the rewards pool
+	 * when it is 0.
+	 */
+	private int trackerRewardWorkers() {
+		return trackerRewardWorkers > 0 ? trackerRewardWorkers : rewardsPoolSize;
+	}
+	
+	/**
+	 * Create the DependencyGuard of an external library: a circuit opened after tourguide.circuit.failure-threshold
+	 * consecutive failures for tourguide.circuit.open-seconds, and an AIMD concurrency limit backing off on the calls
+	 * slower than latencyThresholdMillis.
+	 */
+	private DependencyGuard dependencyGuard(String service, long latencyThresholdMillis, MeterRegistry meterRegistry) {
+		return new DependencyGuard(service,
+				new CircuitBreaker(circuitFailureThreshold, Duration.ofSeconds(circuitOpenSeconds)),
+				new AdaptiveLimiter(limiterInitialLimit, limiterMinLimit, limiterMaxLimit, latencyThresholdMillis),
+				limiterAcquireTimeoutMillis, meterRegistry);
 	}
 	
 }
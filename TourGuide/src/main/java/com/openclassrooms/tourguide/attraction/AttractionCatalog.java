@@ -0,0 +1,172 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Attraction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The attraction catalog, loaded once from gpsUtil and shared by the rewards and the nearby attractions.
+ * Each version of the catalog is an immutable Snapshot holding the attractions, their DistanceEngine and their
+ * AttractionIndex; readers take the current Snapshot with a volatile read and keep using it for the whole call, so
+ * they never lock and never see a half-built catalog.
+ * The catalog can be reloaded on a schedule: the new attractions are matched by name with the current ones, as gpsUtil
+ * gives new attractionId on every call, and the current Snapshot is only replaced, with the next version, when an
+ * Attraction was added, removed or moved.
+ */
+public class AttractionCatalog {
+    private final Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+    private final Supplier<List<Attraction>> source;
+    private final AtomicReference<Snapshot> current;
+    private ScheduledExecutorService scheduler;
+
+    public AttractionCatalog(Supplier<List<Attraction>> source) {
+        this.source = source;
+        this.current = new AtomicReference<>(new Snapshot(1, source.get()));
+    }
+
+    /**
+     * Get the current version of the catalog.
+     *
+     * @return the current Snapshot.
+     */
+    public Snapshot current() {
+        return current.get();
+    }
+
+    /**
+     * Load the attractions again and replace the current Snapshot if they changed. The attractions that did not
+     * change are kept, with their attractionId.
+     *
+     * @return true if a new version was published.
+     */
+    public synchronized boolean refresh() {
+        Snapshot snapshot = current.get();
+        List<Attraction> loaded = source.get();
+        List<Attraction> attractions = new ArrayList<>(loaded.size());
+        boolean changed = loaded.size() != snapshot.size();
+        for (Attraction attraction : loaded) {
+            int ordinal = snapshot.ordinalOf(attraction.attractionName);
+            if (ordinal >= 0 && samePlace(snapshot.getAttractions().get(ordinal), attraction)) {
+                attractions.add(snapshot.getAttractions().get(ordinal));
+            } else {
+                attractions.add(attraction);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return false;
+        }
+        current.set(new Snapshot(snapshot.getVersion() + 1, attractions));
+        logger.info("Attraction catalog version " + (snapshot.getVersion() + 1) + " with " + attractions.size()
+                + " attractions");
+        return true;
+    }
+
+    /**
+     * Refresh the catalog every intervalSeconds from a daemon thread, until close. Nothing is scheduled when
+     * intervalSeconds is not positive.
+     *
+     * @param intervalSeconds delay between two refreshes.
+     */
+    public synchronized void start(long intervalSeconds) {
+        if (intervalSeconds <= 0 || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attraction-catalog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the scheduled refreshes.
+     */
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.warn("Could not refresh the attraction catalog : " + e);
+        }
+    }
+
+    private static boolean samePlace(Attraction a, Attraction b) {
+        return a.latitude == b.latitude && a.longitude == b.longitude;
+    }
+
+    /**
+     * One immutable version of the catalog. The ordinal of an Attraction is its index in getAttractions, and is valid
+     * for the structures of the same Snapshot only.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final DistanceEngine distanceEngine;
+        private final AttractionIndex attractionIndex;
+        private final Map<String, Integer> ordinalsByName;
+
+        Snapshot(long version, List<Attraction> attractions) {
+            this.version = version;
+            this.distanceEngine = new DistanceEngine(attractions);
+            this.attractionIndex = new AttractionIndex(distanceEngine);
+            Map<String, Integer> ordinals = new HashMap<>();
+            List<Attraction> catalog = distanceEngine.getAttractions();
+            for (int i = 0; i < catalog.size(); i++) {
+                ordinals.putIfAbsent(catalog.get(i).attractionName, i);
+            }
+            this.ordinalsByName = Map.copyOf(ordinals);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Get the attractions of this version.
+         *
+         * @return an unmodifiable list of Attraction.
+         */
+        public List<Attraction> getAttractions() {
+            return distanceEngine.getAttractions();
+        }
+
+        public int size() {
+            return distanceEngine.size();
+        }
+
+        public DistanceEngine getDistanceEngine() {
+            return distanceEngine;
+        }
+
+        public AttractionIndex getAttractionIndex() {
+            return attractionIndex;
+        }
+
+        /**
+         * Get the ordinal of the Attraction with a name.
+         *
+         * @param attractionName the name of the Attraction.
+         * @return the ordinal, or -1 if there is no Attraction with this name.
+         */
+        public int ordinalOf(String attractionName) {
+            return ordinalsByName.getOrDefault(attractionName, -1);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable k-d tree over the attraction catalog, used for k-nearest lookups.
+ * Each Attraction is projected on the unit sphere as a 3D point: the straight-line (chord) distance between two
+ * points grows with the great-circle distance, so the k closest points in 3D are the k closest attractions on Earth.
+ * The tree is stored implicitly in arrays: the node of a range [lo, hi) is its middle element.
+ * Small catalogs are scanned with the batch distance of the DistanceEngine instead, which is faster than the tree.
+ */
+public class AttractionIndex {
+    private static final int DIMENSIONS = 3;
+    private static final int SCAN_THRESHOLD = 64;
+
+    private final DistanceEngine distanceEngine;
+    private final List<Attraction> attractions;
+    private final int[] ordinals;
+    private final double[] coordinates;
+
+    public AttractionIndex(DistanceEngine distanceEngine) {
+        this.distanceEngine = distanceEngine;
+        this.attractions = distanceEngine.getAttractions();
+        int size = this.attractions.size();
+        this.ordinals = new int[size];
+        this.coordinates = new double[size * DIMENSIONS];
+
+        double[] points = new double[size * DIMENSIONS];
+        for (int i = 0; i < size; i++) {
+            int offset = i * DIMENSIONS;
+            points[offset] = distanceEngine.cosLatitude(i) * distanceEngine.cosLongitude(i);
+            points[offset + 1] = distanceEngine.cosLatitude(i) * distanceEngine.sinLongitude(i);
+            points[offset + 2] = distanceEngine.sinLatitude(i);
+            ordinals[i] = i;
+        }
+        build(points, 0, size, 0);
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(points, ordinals[i] * DIMENSIONS, coordinates, i * DIMENSIONS, DIMENSIONS);
+        }
+    }
+
+    /**
+     * Get the attractions of the index, in catalog order.
+     *
+     * @return an unmodifiable list of Attraction.
+     */
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+    /**
+     * Get the k closest Attraction to a Location, closest first. Ties are returned in catalog order.
+     *
+     * @param location the Location to search from.
+     * @param k        the maximum number of Attraction to return.
+     * @return a list of at most k Attraction.
+     */
+    public List<Attraction> nearest(Location location, int k) {
+        int[] nearest = nearestOrdinals(location, k);
+        List<Attraction> nearestAttractions = new ArrayList<>(nearest.length);
+        for (int ordinal : nearest) {
+            nearestAttractions.add(attractions.get(ordinal));
+        }
+        return nearestAttractions;
+    }
+
+    /**
+     * Get the ordinals in the DistanceEngine of the k closest Attraction to a Location, closest first.
+     *
+     * @param location the Location to search from.
+     * @param k        the maximum number of Attraction to return.
+     * @return an array of at most k ordinals.
+     */
+    public int[] nearestOrdinals(Location location, int k) {
+        int count = Math.min(k, attractions.size());
+        if (count <= 0) {
+            return new int[0];
+        }
+        BoundedHeap heap = new BoundedHeap(count);
+        if (attractions.size() <= SCAN_THRESHOLD) {
+            double[] distances = new double[attractions.size()];
+            distanceEngine.distances(location, distances);
+            for (int i = 0; i < distances.length; i++) {
+                heap.offer(distances[i], i);
+            }
+        } else {
+            double[] query = new double[DIMENSIONS];
+            toUnitVector(location.latitude, location.longitude, query, 0);
+            search(query, 0, attractions.size(), 0, heap);
+        }
+        return heap.sortedOrdinals();
+    }
+
+    /**
+     * Recursively order the range [lo, hi) so that its middle element splits the range on the axis of the depth.
+     */
+    private void build(double[] points, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int axis = depth % DIMENSIONS;
+        int mid = (lo + hi) >>> 1;
+        select(points, lo, hi - 1, mid, axis);
+        build(points, lo, mid, depth + 1);
+        build(points, mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * Quickselect on ordinals[lo..hi] so that ordinals[k] holds the median on the axis.
+     */
+    private void select(double[] points, int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            double pivot = points[ordinals[(lo + hi) >>> 1] * DIMENSIONS + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (points[ordinals[i] * DIMENSIONS + axis] < pivot) i++;
+                while (points[ordinals[j] * DIMENSIONS + axis] > pivot) j--;
+                if (i <= j) {
+                    int tmp = ordinals[i];
+                    ordinals[i] = ordinals[j];
+                    ordinals[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void search(double[] query, int lo, int hi, int depth, BoundedHeap heap) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int offset = mid * DIMENSIONS;
+        double dx = query[0] - coordinates[offset];
+        double dy = query[1] - coordinates[offset + 1];
+        double dz = query[2] - coordinates[offset + 2];
+        heap.offer(dx * dx + dy * dy + dz * dz, ordinals[mid]);
+
+        double split = query[depth % DIMENSIONS] - coordinates[offset + depth % DIMENSIONS];
+        boolean leftFirst = split < 0;
+        search(query, leftFirst ? lo : mid + 1, leftFirst ? mid : hi, depth + 1, heap);
+        if (!heap.isFull() || split * split <= heap.worstDistance()) {
+            search(query, leftFirst ? mid + 1 : lo, leftFirst ? hi : mid, depth + 1, heap);
+        }
+    }
+
+    private static void toUnitVector(double latitude, double longitude, double[] target, int offset) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        target[offset] = cosLat * Math.cos(lon);
+        target[offset + 1] = cosLat * Math.sin(lon);
+        target[offset + 2] = Math.sin(lat);
+    }
+
+    /**
+     * Max-heap keeping the k best (distance, ordinal) pairs seen so far, the worst one at the root.
+     */
+    private static class BoundedHeap {
+        private final double[] distances;
+        private final int[] ordinals;
+        private int size;
+
+        BoundedHeap(int capacity) {
+            distances = new double[capacity];
+            ordinals = new int[capacity];
+        }
+
+        boolean isFull() {
+            return size == distances.length;
+        }
+
+        double worstDistance() {
+            return distances[0];
+        }
+
+        void offer(double distance, int ordinal) {
+            if (size < distances.length) {
+                distances[size] = distance;
+                ordinals[size] = ordinal;
+                siftUp(size++);
+            } else if (isBefore(distance, ordinal, distances[0], ordinals[0])) {
+                distances[0] = distance;
+                ordinals[0] = ordinal;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Empty the heap, worst pair first, and return the ordinals from best to worst.
+         */
+        int[] sortedOrdinals() {
+            int[] sorted = new int[size];
+            while (size > 0) {
+                sorted[size - 1] = ordinals[0];
+                swap(0, --size);
+                siftDown(0);
+            }
+            return sorted;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!isBefore(distances[parent], ordinals[parent], distances[index], ordinals[index])) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int worst = index;
+                for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                    if (isBefore(distances[worst], ordinals[worst], distances[child], ordinals[child])) {
+                        worst = child;
+                    }
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(index, worst);
+                index = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+            int ordinal = ordinals[a];
+            ordinals[a] = ordinals[b];
+            ordinals[b] = ordinal;
+        }
+
+        private static boolean isBefore(double distanceA, int ordinalA, double distanceB, int ordinalB) {
+            return distanceA < distanceB || (distanceA == distanceB && ordinalA < ordinalB);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import java.util.List;
+
+/**
+ * Distance computations against the attraction catalog.
+ * Attraction coordinates never change, so the sine and cosine of their latitude and longitude are computed once
+ * and stored in primitive arrays indexed by the ordinal of the Attraction in the catalog.
+ * Distances are great-circle distances in statute miles, with the same formula as before: the cosine of the angle
+ * is clamped to [-1, 1] so that rounding does not turn the same or antipodal points into NaN.
+ */
+public class DistanceEngine {
+    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    public static final double MILES_PER_DEGREE = 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+
+    private final List<Attraction> attractions;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] sinLatitudes;
+    private final double[] cosLatitudes;
+    private final double[] sinLongitudes;
+    private final double[] cosLongitudes;
+
+    public DistanceEngine(List<Attraction> attractions) {
+        this.attractions = List.copyOf(attractions);
+        int size = this.attractions.size();
+        latitudes = new double[size];
+        longitudes = new double[size];
+        sinLatitudes = new double[size];
+        cosLatitudes = new double[size];
+        sinLongitudes = new double[size];
+        cosLongitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            Attraction attraction = this.attractions.get(i);
+            double lat = Math.toRadians(attraction.latitude);
+            double lon = Math.toRadians(attraction.longitude);
+            latitudes[i] = attraction.latitude;
+            longitudes[i] = lon;
+            sinLatitudes[i] = Math.sin(lat);
+            cosLatitudes[i] = Math.cos(lat);
+            sinLongitudes[i] = Math.sin(lon);
+            cosLongitudes[i] = Math.cos(lon);
+        }
+    }
+
+    /**
+     * Return a distance in Miles between two locations.
+     *
+     * @param loc1 first Location.
+     * @param loc2 second Location.
+     * @return distance between loc1 and loc2.
+     */
+    public static double distance(Location loc1, Location loc2) {
+        double lat1 = Math.toRadians(loc1.latitude);
+        double lon1 = Math.toRadians(loc1.longitude);
+        double lat2 = Math.toRadians(loc2.latitude);
+        double lon2 = Math.toRadians(loc2.longitude);
+
+        return toMiles(Math.sin(lat1) * Math.sin(lat2) + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+    }
+
+    /**
+     * Get the attractions of the engine, the index in this list is the ordinal used by the other methods.
+     *
+     * @return an unmodifiable list of Attraction.
+     */
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+    /**
+     * Get the number of attractions.
+     *
+     * @return the size of the catalog.
+     */
+    public int size() {
+        return attractions.size();
+    }
+
+    /**
+     * Get the sine of the latitude of an Attraction.
+     *
+     * @param ordinal of the Attraction.
+     * @return the sine of its latitude.
+     */
+    public double sinLatitude(int ordinal) {
+        return sinLatitudes[ordinal];
+    }
+
+    /**
+     * Get the cosine of the latitude of an Attraction.
+     *
+     * @param ordinal of the Attraction.
+     * @return the cosine of its latitude.
+     */
+    public double cosLatitude(int ordinal) {
+        return cosLatitudes[ordinal];
+    }
+
+    /**
+     * Get the sine of the longitude of an Attraction.
+     *
+     * @param ordinal of the Attraction.
+     * @return the sine of its longitude.
+     */
+    public double sinLongitude(int ordinal) {
+        return sinLongitudes[ordinal];
+    }
+
+    /**
+     * Get the cosine of the longitude of an Attraction.
+     *
+     * @param ordinal of the Attraction.
+     * @return the cosine of its longitude.
+     */
+    public double cosLongitude(int ordinal) {
+        return cosLongitudes[ordinal];
+    }
+
+    /**
+     * Return a distance in Miles between an Attraction and a Location.
+     *
+     * @param ordinal  of the Attraction.
+     * @param location the Location.
+     * @return the distance between the Attraction and the Location.
+     */
+    public double distance(int ordinal, Location location) {
+        double lat = Math.toRadians(location.latitude);
+        double lon = Math.toRadians(location.longitude);
+        return toMiles(Math.sin(lat) * sinLatitudes[ordinal]
+                + Math.cos(lat) * cosLatitudes[ordinal] * Math.cos(lon - longitudes[ordinal]));
+    }
+
+    /**
+     * Find if an Attraction is within a distance of a Location.
+     * The north-south part of the equirectangular distance is checked first: it never exceeds the great-circle
+     * distance, so most of the far attractions are rejected without any trigonometry.
+     *
+     * @param ordinal  of the Attraction.
+     * @param location the Location.
+     * @param miles    the distance limit.
+     * @return true if the Attraction is not further than miles from the Location.
+     */
+    public boolean isWithin(int ordinal, Location location, double miles) {
+        if (Math.abs(location.latitude - latitudes[ordinal]) * MILES_PER_DEGREE > miles) {
+            return false;
+        }
+        return !(distance(ordinal, location) > miles);
+    }
+
+    /**
+     * Compute the distance in Miles between a Location and every Attraction, without allocating.
+     *
+     * @param location the Location.
+     * @param target   array of at least size() elements, receives the distance of each Attraction by ordinal.
+     */
+    public void distances(Location location, double[] target) {
+        double lat = Math.toRadians(location.latitude);
+        double lon = Math.toRadians(location.longitude);
+        double sinLat = Math.sin(lat);
+        double cosLat = Math.cos(lat);
+        double sinLon = Math.sin(lon);
+        double cosLon = Math.cos(lon);
+        for (int i = 0; i < latitudes.length; i++) {
+            target[i] = toMiles(sinLat * sinLatitudes[i] + cosLat * cosLatitudes[i] * cosLongitudeDifference(i, sinLon, cosLon));
+        }
+    }
+
+    /**
+     * cos(a - b) = cos(a) cos(b) + sin(a) sin(b), with b the longitude of the Attraction.
+     */
+    private double cosLongitudeDifference(int ordinal, double sinLon, double cosLon) {
+        return cosLon * cosLongitudes[ordinal] + sinLon * sinLongitudes[ordinal];
+    }
+
+    private static double toMiles(double cosAngle) {
+        double angle = Math.acos(Math.max(-1, Math.min(1, cosAngle)));
+        return MILES_PER_DEGREE * Math.toDegrees(angle);
+    }
+}
@@ -0,0 +1,135 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable latitude / longitude grid over the attraction catalog, sized for one search radius.
+ * A radius query only visits the cells that can hold an Attraction within the radius, so its cost depends on the
+ * density of attractions around the Location instead of the size of the catalog.
+ * Candidates are a superset of the matches: the caller still checks the exact distance.
+ */
+public class ProximityGrid {
+    private static final double MIN_CELL_DEGREES = 0.05;
+    private static final double PADDING_DEGREES = 1e-6;
+
+    private final double radiusMiles;
+    private final double radiusDegrees;
+    private final int attractionCount;
+    private final boolean coversEverything;
+    private final double rowDegrees;
+    private final double columnDegrees;
+    private final int rows;
+    private final int columns;
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    public ProximityGrid(List<Attraction> attractions, double radiusMiles) {
+        this.radiusMiles = radiusMiles;
+        this.radiusDegrees = radiusMiles / DistanceEngine.MILES_PER_DEGREE + PADDING_DEGREES;
+        this.attractionCount = attractions.size();
+        // beyond half the circumference every point of the sphere is in range
+        this.coversEverything = radiusDegrees >= 180;
+        // cells are at least as wide as the radius, and columns tile the 360 degrees exactly so that they wrap
+        double cellDegrees = Math.min(180, Math.max(MIN_CELL_DEGREES, radiusDegrees));
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.columns = (int) Math.ceil(360 / cellDegrees);
+        this.rowDegrees = 180.0 / rows;
+        this.columnDegrees = 360.0 / columns;
+
+        if (!coversEverything) {
+            Map<Long, List<Integer>> content = new HashMap<>();
+            for (int i = 0; i < attractions.size(); i++) {
+                Attraction attraction = attractions.get(i);
+                long key = cellKey(row(attraction.latitude), column(attraction.longitude));
+                content.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+            content.forEach((key, ordinals) -> cells.put(key, ordinals.stream().mapToInt(Integer::intValue).toArray()));
+        }
+    }
+
+    /**
+     * Get the radius this grid was built for.
+     *
+     * @return the radius in miles.
+     */
+    public double getRadiusMiles() {
+        return radiusMiles;
+    }
+
+    /**
+     * Call the consumer with the ordinal of each Attraction that may be within the radius of the Location.
+     * Near a pole every longitude is visited, and the longitude range wraps around the antimeridian.
+     *
+     * @param location the center of the search.
+     * @param consumer receives the ordinals of the candidate Attraction.
+     */
+    public void forEachCandidate(Location location, IntConsumer consumer) {
+        if (coversEverything) {
+            for (int i = 0; i < attractionCount; i++) {
+                consumer.accept(i);
+            }
+            return;
+        }
+        double latitude = location.latitude;
+        int firstRow = row(latitude - radiusDegrees);
+        int lastRow = row(latitude + radiusDegrees);
+
+        double longitudeSpan = longitudeSpan(latitude);
+        int firstColumn;
+        int columnCount;
+        if (longitudeSpan >= 180) {
+            firstColumn = 0;
+            columnCount = columns;
+        } else {
+            firstColumn = (int) Math.floor((location.longitude - longitudeSpan + 180) / columnDegrees);
+            int lastColumn = (int) Math.floor((location.longitude + longitudeSpan + 180) / columnDegrees);
+            columnCount = Math.min(columns, lastColumn - firstColumn + 1);
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int c = 0; c < columnCount; c++) {
+                int[] ordinals = cells.get(cellKey(row, Math.floorMod(firstColumn + c, columns)));
+                if (ordinals != null) {
+                    for (int ordinal : ordinals) {
+                        consumer.accept(ordinal);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the largest longitude difference, in degrees, of a point within the radius of a point at this latitude.
+     * For a spherical cap of angular radius r centered at latitude lat it is asin(sin(r) / cos(lat)), and the cap
+     * spans every longitude once it contains a pole.
+     */
+    private double longitudeSpan(double latitude) {
+        if (Math.abs(latitude) + radiusDegrees >= 90) {
+            return 180;
+        }
+        double ratio = Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(latitude));
+        if (ratio >= 1) {
+            return 180;
+        }
+        return Math.toDegrees(Math.asin(ratio)) + PADDING_DEGREES;
+    }
+
+    private int row(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / rowDegrees);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    private int column(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / columnDegrees), columns);
+    }
+
+    private long cellKey(int row, int column) {
+        return (long) row * columns + column;
+    }
+}
@@ -0,0 +1,124 @@
+package com.openclassrooms.tourguide.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.tourguide.executor.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rewardCentral.RewardCentral;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * RewardCentral caching the points of another RewardCentral by Attraction and User, so that a User asking again for the
+ * same attractions does not wait for RewardCentral. The cache holds at most maximumSize points, each one for
+ * expireAfterWrite; the concurrent misses of the same points share one call. The hits and misses are published as the
+ * cache metrics with the tag cache=rewardPoints.
+ */
+public class CachedRewardCentral extends RewardCentral {
+    public static final long DEFAULT_MAXIMUM_SIZE = 1_000_000;
+    public static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.ofHours(1);
+
+    private final Logger logger = LoggerFactory.getLogger(CachedRewardCentral.class);
+    private final RewardCentral rewardCentral;
+    private final Executor prefetchExecutor;
+    private final Cache<RewardKey, Integer> points;
+    private final SingleFlight<RewardKey, Integer> loads = new SingleFlight<>();
+
+    public CachedRewardCentral(RewardCentral rewardCentral, long maximumSize, Duration expireAfterWrite,
+                               Executor prefetchExecutor, MeterRegistry meterRegistry) {
+        this.rewardCentral = rewardCentral;
+        this.prefetchExecutor = prefetchExecutor;
+        this.points = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, points, "rewardPoints");
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        RewardKey key = new RewardKey(attractionId, userId);
+        Integer cached = points.getIfPresent(key);
+        return cached != null ? cached : load(key);
+    }
+
+    /**
+     * Get the points of a User for an Attraction only if they are cached, without calling RewardCentral. The read is
+     * counted as a hit or a miss of the cache.
+     *
+     * @param attractionId the id of the Attraction.
+     * @param userId       the id of the User.
+     * @return the cached points, or null when they are not cached.
+     */
+    public Integer getIfPresent(UUID attractionId, UUID userId) {
+        return points.getIfPresent(new RewardKey(attractionId, userId));
+    }
+
+    /**
+     * Get the points of a User for an Attraction after a miss of getIfPresent: from the cache if they were loaded
+     * since, else from the load in progress or from RewardCentral. The miss is not counted again.
+     *
+     * @param attractionId the id of the Attraction.
+     * @param userId       the id of the User.
+     * @return the reward points.
+     */
+    public int loadAttractionRewardPoints(UUID attractionId, UUID userId) {
+        RewardKey key = new RewardKey(attractionId, userId);
+        Integer cached = points.policy().getIfPresentQuietly(key);
+        return cached != null ? cached : load(key);
+    }
+
+    /**
+     * Load in the background the points of a User for the attractions not cached nor already being loaded. The
+     * loads are skipped when the prefetch executor is full.
+     *
+     * @param userId        the id of the User.
+     * @param attractionIds the ids of the attractions.
+     */
+    public void prefetch(UUID userId, Collection<UUID> attractionIds) {
+        for (UUID attractionId : attractionIds) {
+            RewardKey key = new RewardKey(attractionId, userId);
+            if (!points.asMap().containsKey(key) && !loads.isInFlight(key)) {
+                try {
+                    prefetchExecutor.execute(() -> {
+                        try {
+                            load(key);
+                        } catch (RuntimeException e) {
+                            logger.debug("Could not prefetch the reward points of " + key + " : " + e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of points in the cache.
+     *
+     * @return the estimated number of points.
+     */
+    public long size() {
+        return points.estimatedSize();
+    }
+
+    private int load(RewardKey key) {
+        return loads.run(key, () -> {
+            int rewardPoints = rewardCentral.getAttractionRewardPoints(key.attractionId(), key.userId());
+            points.put(key, rewardPoints);
+            return rewardPoints;
+        });
+    }
+
+    private record RewardKey(UUID attractionId, UUID userId) {
+    }
+}
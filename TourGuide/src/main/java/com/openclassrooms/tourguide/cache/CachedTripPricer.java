@@ -0,0 +1,59 @@
+package com.openclassrooms.tourguide.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * TripPricer caching the deals of another TripPricer by all the arguments of getPrice: the User, the preferences used
+ * for pricing and the cumulative reward points. A change of preferences or of points is a new key, so the old deals
+ * are never served again and are evicted by size or age.
+ * The deals are served for expireAfterWrite at most; once older than refreshAfterWrite, a read still returns them at
+ * once and reloads them from the refresh executor (stale-while-revalidate). The hits and misses are published as the
+ * cache metrics with the tag cache=tripDeals.
+ */
+public class CachedTripPricer extends TripPricer {
+    public static final long DEFAULT_MAXIMUM_SIZE = 100_000;
+    public static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.ofMinutes(10);
+    public static final Duration DEFAULT_REFRESH_AFTER_WRITE = Duration.ofMinutes(1);
+
+    private final TripPricer tripPricer;
+    private final LoadingCache<PriceKey, List<Provider>> deals;
+
+    public CachedTripPricer(TripPricer tripPricer, long maximumSize, Duration expireAfterWrite,
+                            Duration refreshAfterWrite, Executor refreshExecutor, MeterRegistry meterRegistry) {
+        this.tripPricer = tripPricer;
+        this.deals = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .refreshAfterWrite(refreshAfterWrite)
+                .executor(refreshExecutor)
+                .recordStats()
+                .build(key -> List.copyOf(tripPricer.getPrice(key.apiKey(), key.attractionId(), key.adults(),
+                        key.children(), key.nightsStay(), key.rewardsPoints())));
+        CaffeineCacheMetrics.monitor(meterRegistry, deals, "tripDeals");
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                   int rewardsPoints) {
+        return deals.get(new PriceKey(apiKey, attractionId, adults, children, nightsStay, rewardsPoints));
+    }
+
+    @Override
+    public String getProviderName(String apiKey, int adults) {
+        return tripPricer.getProviderName(apiKey, adults);
+    }
+
+    private record PriceKey(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                            int rewardsPoints) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.openclassrooms.tourguide.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.LocationUpdatePublisher;
+import gpsUtil.location.VisitedLocation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.Flow;
+
+/**
+ * Feeds of the locations of all the users, as newline-delimited JSON or server-sent events.
+ * The current locations are written while the UserRepository is walked, without building a list of them, so the
+ * heap used does not depend on the number of users. The live feed sends each location published by the tracking.
+ */
+@Component
+public class LocationFeed {
+    public static final String EVENT_NAME = "location";
+
+    private static final byte[] SSE_PREFIX = ("event:" + EVENT_NAME + "\ndata:").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_SUFFIX = {'\n', '\n'};
+    private static final byte[] NDJSON_SUFFIX = {'\n'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TourGuideService tourGuideService;
+    private final LocationUpdatePublisher locationUpdatePublisher;
+    private final ObjectWriter objectWriter;
+    private final long liveTimeoutMillis;
+
+    public LocationFeed(TourGuideService tourGuideService, LocationUpdatePublisher locationUpdatePublisher,
+                        ObjectMapper objectMapper,
+                        @Value("${tourguide.locations.live-timeout-ms:1800000}") long liveTimeoutMillis) {
+        this.tourGuideService = tourGuideService;
+        this.locationUpdatePublisher = locationUpdatePublisher;
+        this.objectWriter = objectMapper.writerFor(VisitedLocation.class);
+        this.liveTimeoutMillis = liveTimeoutMillis;
+    }
+
+    /**
+     * Get the last VisitedLocation of every User, one per line or one per event. The users without location are
+     * skipped, the users added during the walk may or may not be written.
+     *
+     * @param sse        true for server-sent events, false for newline-delimited JSON.
+     * @param flushEvery number of users written between two flushes to the client.
+     * @return the body of the response, written by Spring MVC on an async thread.
+     */
+    public StreamingResponseBody currentLocations(boolean sse, int flushEvery) {
+        return outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+            Iterator<VisitedLocation> locations = tourGuideService.streamUsers()
+                    .map(user -> user.getLocationHistory().peekLast())
+                    .iterator();
+            int count = 0;
+            while (locations.hasNext()) {
+                VisitedLocation visitedLocation = locations.next();
+                if (visitedLocation == null) {
+                    continue;
+                }
+                write(out, visitedLocation, sse);
+                if (++count % flushEvery == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        };
+    }
+
+    /**
+     * Subscribe to the locations published from now on, sent as server-sent events until the client disconnects, the
+     * timeout expires or the application stops. A client too slow to keep up misses locations.
+     *
+     * @return the emitter of the events.
+     */
+    public SseEmitter liveLocations() {
+        SseEmitter emitter = new SseEmitter(liveTimeoutMillis);
+        locationUpdatePublisher.subscribe(new EmitterSubscriber(emitter));
+        return emitter;
+    }
+
+    private void write(OutputStream out, VisitedLocation visitedLocation, boolean sse) throws IOException {
+        if (sse) {
+            out.write(SSE_PREFIX);
+        }
+        out.write(objectWriter.writeValueAsBytes(visitedLocation));
+        out.write(sse ? SSE_SUFFIX : NDJSON_SUFFIX);
+    }
+
+    /**
+     * Send the locations to an SseEmitter one at a time, and cancel the subscription when the emitter ends.
+     */
+    private static class EmitterSubscriber implements Flow.Subscriber<VisitedLocation> {
+        private final SseEmitter emitter;
+        private Flow.Subscription subscription;
+
+        EmitterSubscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            emitter.onCompletion(subscription::cancel);
+            emitter.onTimeout(subscription::cancel);
+            emitter.onError(e -> subscription.cancel());
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(VisitedLocation visitedLocation) {
+            try {
+                emitter.send(SseEmitter.event().name(EVENT_NAME).data(visitedLocation, MediaType.APPLICATION_JSON));
+                subscription.request(1);
+            } catch (IOException | IllegalStateException e) {
+                // the client is gone or the emitter has ended
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            emitter.completeWithError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            emitter.complete();
+        }
+    }
+}
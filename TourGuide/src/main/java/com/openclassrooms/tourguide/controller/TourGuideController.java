@@ -1,38 +1,83 @@
 package com.openclassrooms.tourguide.controller;
 
 import com.openclassrooms.tourguide.dto.NearbyAttractionsDTO;
+import com.openclassrooms.tourguide.resilience.DependencyUnavailableException;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 import gpsUtil.location.VisitedLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import tripPricer.Provider;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
+/**
+ * The endpoints that may wait on gpsUtil, RewardCentral or TripPricer return a CompletableFuture: they run on the web
+ * executor, and the servlet thread is released while they wait. Each one has its own timeout, after which the
+ * response is 504 Gateway Timeout; the call in progress is not interrupted and ends on the web executor, a call still
+ * queued is skipped. When the queue of the web executor is full the response is 503 Service Unavailable.
+ */
 @RestController
 public class TourGuideController {
+    private Logger logger = LoggerFactory.getLogger(TourGuideController.class);
 
     @Autowired
     TourGuideService tourGuideService;
 
+    @Autowired
+    LocationFeed locationFeed;
+
+    @Autowired
+    @Qualifier("webExecutor")
+    ExecutorService webExecutor;
+
+    @Value("${tourguide.web.timeout.location-ms:5000}")
+    long locationTimeoutMillis;
+
+    @Value("${tourguide.web.timeout.nearby-attractions-ms:10000}")
+    long nearbyAttractionsTimeoutMillis;
+
+    @Value("${tourguide.web.timeout.trip-deals-ms:5000}")
+    long tripDealsTimeoutMillis;
+
+    @Value("${tourguide.web.timeout.batch-ms:60000}")
+    long batchTimeoutMillis;
+
     @RequestMapping("/")
     public String index() {
         return "Greetings from TourGuide!";
     }
 
     /**
-     * Get the VisitedLocation of the User with userName.
+     * Get the VisitedLocation of the User with userName. A User without location is tracked first.
      *
      * @param userName name of the User.
      * @return the last VisitedLocation of the User.
      */
     @RequestMapping("/getLocation")
-    public VisitedLocation getLocation(@RequestParam String userName) {
-        return tourGuideService.getUserLocation(getUser(userName));
+    public CompletableFuture<VisitedLocation> getLocation(@RequestParam String userName) {
+        return async(() -> tourGuideService.getUserLocation(getUser(userName)), locationTimeoutMillis);
     }
 
     /**
@@ -44,9 +89,68 @@ public class TourGuideController {
      * @return a DTO Object / JSON.
      */
     @RequestMapping("/getNearbyAttractions")
-    public NearbyAttractionsDTO getNearbyAttractions(@RequestParam String userName) {
-        VisitedLocation visitedLocation = tourGuideService.getUserLocation(getUser(userName));
-        return tourGuideService.getNearbyAttractionsDTO(visitedLocation);
+    public CompletableFuture<NearbyAttractionsDTO> getNearbyAttractions(@RequestParam String userName) {
+        return async(() -> {
+            VisitedLocation visitedLocation = tourGuideService.getUserLocation(getUser(userName));
+            return tourGuideService.getNearbyAttractionsDTO(visitedLocation);
+        }, nearbyAttractionsTimeoutMillis);
+    }
+
+    /**
+     * Get the VisitedLocation of many users in one request. The users are the ones named in userNames, or all the
+     * users, filtered by userNamePrefix when it is set. For large batches, send userNames as a form in a POST.
+     *
+     * @param userNames      names of the users, repeated or separated by commas.
+     * @param userNamePrefix prefix of the names of the users.
+     * @return the last VisitedLocation of each User, by userName.
+     */
+    @RequestMapping("/getUsersLocations")
+    public CompletableFuture<Map<String, VisitedLocation>> getUsersLocations(@RequestParam(required = false) List<String> userNames,
+                                                                             @RequestParam(required = false) String userNamePrefix) {
+        return async(() -> tourGuideService.getUserLocations(tourGuideService.getUsers(userNames, userNamePrefix)),
+                batchTimeoutMillis);
+    }
+
+    /**
+     * Get the NearbyAttractionsDTO of many users in one request, selected as in getUsersLocations.
+     *
+     * @param userNames      names of the users, repeated or separated by commas.
+     * @param userNamePrefix prefix of the names of the users.
+     * @return a DTO Object / JSON for each User, by userName.
+     */
+    @RequestMapping("/getUsersNearbyAttractions")
+    public CompletableFuture<Map<String, NearbyAttractionsDTO>> getUsersNearbyAttractions(@RequestParam(required = false) List<String> userNames,
+                                                                                          @RequestParam(required = false) String userNamePrefix) {
+        return async(() -> tourGuideService.getNearbyAttractionsDTOs(tourGuideService.getUsers(userNames, userNamePrefix)),
+                batchTimeoutMillis);
+    }
+
+    /**
+     * Get the last VisitedLocation of all the users, streamed as newline-delimited JSON, or as server-sent events
+     * with format=sse. The response is chunked and flushed to the client every flushEvery users.
+     *
+     * @param format     ndjson or sse.
+     * @param flushEvery number of users between two flushes.
+     * @return the streamed body.
+     */
+    @RequestMapping("/getAllCurrentLocations")
+    public ResponseEntity<StreamingResponseBody> getAllCurrentLocations(@RequestParam(defaultValue = "ndjson") String format,
+                                                                        @RequestParam(defaultValue = "1000") int flushEvery) {
+        boolean sse = "sse".equalsIgnoreCase(format);
+        return ResponseEntity.ok()
+                .contentType(sse ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON)
+                .body(locationFeed.currentLocations(sse, Math.max(1, flushEvery)));
+    }
+
+    /**
+     * Get each new VisitedLocation of the tracking as a server-sent event named location, as long as the client
+     * stays connected.
+     *
+     * @return the emitter of the events.
+     */
+    @RequestMapping("/getLocationUpdates")
+    public SseEmitter getLocationUpdates() {
+        return locationFeed.liveLocations();
     }
 
     /**
@@ -67,8 +171,42 @@ public class TourGuideController {
      * @return a list of Provider.
      */
     @RequestMapping("/getTripDeals")
-    public List<Provider> getTripDeals(@RequestParam String userName) {
-        return tourGuideService.getTripDeals(getUser(userName));
+    public CompletableFuture<List<Provider>> getTripDeals(@RequestParam String userName) {
+        return async(() -> tourGuideService.getTripDeals(getUser(userName)), tripDealsTimeoutMillis);
+    }
+
+    /**
+     * Answer 504 Gateway Timeout to a request whose endpoint did not complete within its timeout.
+     *
+     * @param e the timeout.
+     */
+    @ExceptionHandler(TimeoutException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public void timeout(TimeoutException e) {
+        logger.debug("Request timed out");
+    }
+
+    /**
+     * Answer 503 Service Unavailable to a request refused by the circuit breaker or the concurrency limit of gpsUtil,
+     * RewardCentral or TripPricer.
+     *
+     * @param e the refusal.
+     */
+    @ExceptionHandler(DependencyUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void dependencyUnavailable(DependencyUnavailableException e) {
+        logger.debug(e.getMessage());
+    }
+
+    /**
+     * Answer 503 Service Unavailable to a request refused by the web executor, its queue being full.
+     *
+     * @param e the refusal.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void webExecutorFull(RejectedExecutionException e) {
+        logger.debug("Web executor full");
     }
 
     /**
@@ -81,4 +219,32 @@ public class TourGuideController {
         return tourGuideService.getUser(userName);
     }
 
-}
\ No newline at end of file
+    /**
+     * Run a call on the web executor. The timeout starts with the submission, and a call that has not started before
+     * it is skipped.
+     *
+     * @param call          the call.
+     * @param timeoutMillis time after which the future fails with a TimeoutException.
+     * @return the future result of the call, failed with a RejectedExecutionException when the executor is full.
+     */
+    private <T> CompletableFuture<T> async(Supplier<T> call, long timeoutMillis) {
+        CompletableFuture<T> future = new CompletableFuture<T>().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            webExecutor.execute(() -> {
+                // the request was already answered with 504, the libraries are not called for nothing
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(call.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+}
@@ -4,6 +4,11 @@ import gpsUtil.location.Location;
 
 public class AttractionDTO {
 
+    /**
+     * Reward points of an Attraction whose points could not be fetched in time from RewardCentral.
+     */
+    public static final int UNKNOWN_REWARD = -1;
+
     private String name;
 
     private Location location;
@@ -0,0 +1,82 @@
+package com.openclassrooms.tourguide.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Apply a function to each element of a list on an executor, with at most parallelism calls in progress for one list.
+ * The executor is shared by all the lists; the bound is per list, so that one large batch cannot take all of its
+ * threads from the others.
+ */
+public class BoundedFanOut {
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    public BoundedFanOut(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Get the maximum number of calls in progress for one list.
+     *
+     * @return the parallelism.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Apply the function to each element and wait for all the results. A new call starts when one of the calls in
+     * progress ends; once a call has failed, no new call starts.
+     *
+     * @param elements the elements.
+     * @param function the function, called from the threads of the executor.
+     * @return the results, in the order of the elements.
+     * @throws RuntimeException the exception of the first failed call.
+     */
+    public <T, R> List<R> map(List<T> elements, Function<? super T, ? extends R> function) {
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<R>> futures = new ArrayList<>(elements.size());
+        try {
+            for (T element : elements) {
+                permits.acquire();
+                if (failed.get()) {
+                    break;
+                }
+                futures.add(CompletableFuture.<R>supplyAsync(() -> function.apply(element), executor)
+                        .whenComplete((result, e) -> {
+                            if (e != null) {
+                                failed.set(true);
+                            }
+                            permits.release();
+                        }));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(false));
+            throw new CompletionException(e);
+        }
+        List<R> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<R> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+}
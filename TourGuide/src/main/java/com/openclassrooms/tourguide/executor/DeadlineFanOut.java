@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide.executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Apply a function to each element of a short list in parallel on an executor, with one deadline shared by all the
+ * calls: a call that failed, was rejected by the executor or did not end before the deadline, gives the fallback value
+ * instead of failing the list. A late call is not interrupted and ends on the executor.
+ * The executor must reject the tasks it cannot queue: a task run by the calling thread would ignore the deadline.
+ */
+public class DeadlineFanOut {
+    public static final long DEFAULT_TIMEOUT_MILLIS = 2000;
+
+    private final Logger logger = LoggerFactory.getLogger(DeadlineFanOut.class);
+    private final ExecutorService executor;
+    private final long timeoutNanos;
+    private final LongAdder fallbacks = new LongAdder();
+
+    public DeadlineFanOut(ExecutorService executor, long timeoutMillis) {
+        this.executor = executor;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Apply the function to each element and wait for the results until the deadline.
+     *
+     * @param elements the elements.
+     * @param function the function, called from the threads of the executor.
+     * @param fallback the result of a failed or late call.
+     * @return the results, in the order of the elements.
+     */
+    public <T, R> List<R> map(List<T> elements, Function<? super T, ? extends R> function, R fallback) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        List<CompletableFuture<R>> futures = new ArrayList<>(elements.size());
+        for (T element : elements) {
+            try {
+                futures.add(CompletableFuture.supplyAsync(() -> function.apply(element), executor));
+            } catch (RejectedExecutionException e) {
+                futures.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        List<R> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<R> future : futures) {
+            results.add(await(future, deadline, fallback));
+        }
+        return results;
+    }
+
+    /**
+     * Get the number of calls that gave the fallback value.
+     *
+     * @return the fallbacks.
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    private <R> R await(CompletableFuture<R> future, long deadline, R fallback) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("Call not ended before the deadline");
+        } catch (ExecutionException e) {
+            logger.debug("Call failed : " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fallbacks.increment();
+        return fallback;
+    }
+}
@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide.executor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesce the concurrent calls for the same key: the first caller runs the call, the callers arriving while it is in
+ * flight wait for it and get the same result, or the same exception. A call arriving after the end of the previous
+ * one runs again.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Run the call for the key, or wait for the one in flight.
+     *
+     * @param key  the key of the call.
+     * @param call the call, run by the calling thread if no call is in flight for the key.
+     * @return the result of the call.
+     */
+    public V run(K key, Supplier<V> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            V result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Get the number of calls that waited for a call in flight instead of running.
+     *
+     * @return the coalesced calls.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Find if a call is in flight for the key.
+     *
+     * @param key the key of the call.
+     * @return true if a call is in flight.
+     */
+    public boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    /**
+     * Get the number of keys with a call in flight.
+     *
+     * @return the calls in flight.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
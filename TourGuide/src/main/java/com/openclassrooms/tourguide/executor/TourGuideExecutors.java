@@ -0,0 +1,190 @@
+package com.openclassrooms.tourguide.executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory of the executors used for tracking, rewards, prefetching, nearby attraction points, batches, the live
+ * location feed and the web endpoints.
+ * In the application they are Spring beans closed with the context (see TourGuideModule), the shared default
+ * executors are only used by services created without Spring, as in the tests.
+ */
+public class TourGuideExecutors {
+    public static final int DEFAULT_TRACKING_POOL_SIZE = 100;
+    public static final int DEFAULT_REWARDS_POOL_SIZE = 50;
+    public static final int DEFAULT_BATCH_POOL_SIZE = 64;
+    public static final int DEFAULT_LOCATIONS_POOL_SIZE = 8;
+    public static final int DEFAULT_WEB_POOL_SIZE = 200;
+    public static final int DEFAULT_PREFETCH_POOL_SIZE = 8;
+    public static final int DEFAULT_POINTS_POOL_SIZE = 64;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private static final Logger logger = LoggerFactory.getLogger(TourGuideExecutors.class);
+    private static final MethodHandle VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutor();
+
+    private TourGuideExecutors() {
+    }
+
+    /**
+     * Create a fixed size pool with a bounded queue. When the queue is full the submitting thread runs the task
+     * itself, which slows down the producer instead of rejecting the task.
+     *
+     * @param name          prefix of the thread names.
+     * @param poolSize      number of threads.
+     * @param queueCapacity maximum number of waiting tasks.
+     * @return the ExecutorService.
+     */
+    public static ExecutorService newBoundedPool(String name, int poolSize, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new NamedThreadFactory(name), new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create a fixed size pool with a bounded queue for best-effort tasks: when the queue is full the task is rejected
+     * with a RejectedExecutionException, so that the submitting thread never waits nor runs it.
+     *
+     * @param name          prefix of the thread names.
+     * @param poolSize      number of threads.
+     * @param queueCapacity maximum number of waiting tasks.
+     * @return the ExecutorService.
+     */
+    public static ExecutorService newBestEffortPool(String name, int poolSize, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new NamedThreadFactory(name), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create an executor for blocking calls to gpsUtil or RewardCentral. With virtualThreads, and a JVM that supports
+     * them, each task runs on its own virtual thread; otherwise a bounded pool is used.
+     *
+     * @param name           prefix of the thread names.
+     * @param poolSize       number of threads of the pool.
+     * @param queueCapacity  maximum number of waiting tasks of the pool.
+     * @param virtualThreads true to use a virtual thread per task when possible.
+     * @return the ExecutorService.
+     */
+    public static ExecutorService newIoExecutor(String name, int poolSize, int queueCapacity, boolean virtualThreads) {
+        if (virtualThreads) {
+            if (isVirtualThreadSupported()) {
+                logger.info("Using a virtual thread per task for the " + name + " executor");
+                try {
+                    return (ExecutorService) VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke();
+                } catch (Throwable e) {
+                    logger.warn("Could not create the virtual thread executor " + name + " : " + e);
+                }
+            } else {
+                logger.warn("Virtual threads are not supported by this JVM, using a pool for the " + name + " executor");
+            }
+        }
+        return newBoundedPool(name, poolSize, queueCapacity);
+    }
+
+    /**
+     * Find if the JVM can run virtual threads (Java 21 and later).
+     *
+     * @return true if virtual threads are supported.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Get the tracking executor shared by the services created without Spring.
+     *
+     * @return the shared ExecutorService.
+     */
+    public static ExecutorService defaultTrackingExecutor() {
+        return DefaultExecutors.TRACKING;
+    }
+
+    /**
+     * Get the rewards executor shared by the services created without Spring.
+     *
+     * @return the shared ExecutorService.
+     */
+    public static ExecutorService defaultRewardsExecutor() {
+        return DefaultExecutors.REWARDS;
+    }
+
+    /**
+     * Get the executor of the tracker reward workers shared by the services created without Spring.
+     *
+     * @return the shared ExecutorService.
+     */
+    public static ExecutorService defaultTrackerRewardsExecutor() {
+        return DefaultExecutors.TRACKER_REWARDS;
+    }
+
+    /**
+     * Get the prefetch executor shared by the services created without Spring.
+     *
+     * @return the shared ExecutorService.
+     */
+    public static ExecutorService defaultPrefetchExecutor() {
+        return DefaultExecutors.PREFETCH;
+    }
+
+    /**
+     * Get the nearby attraction points executor shared by the services created without Spring.
+     *
+     * @return the shared ExecutorService.
+     */
+    public static ExecutorService defaultPointsExecutor() {
+        return DefaultExecutors.POINTS;
+    }
+
+    private static MethodHandle findVirtualThreadPerTaskExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(java.util.concurrent.Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lazily created, their daemon threads stop after a minute without work.
+     */
+    private static class DefaultExecutors {
+        private static final ExecutorService TRACKING =
+                newBoundedPool("default-tracking", DEFAULT_TRACKING_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+        private static final ExecutorService REWARDS =
+                newBoundedPool("default-rewards", DEFAULT_REWARDS_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+        private static final ExecutorService TRACKER_REWARDS =
+                newBoundedPool("default-tracker-rewards", DEFAULT_REWARDS_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+        private static final ExecutorService PREFETCH =
+                newBestEffortPool("default-prefetch", DEFAULT_PREFETCH_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+        private static final ExecutorService POINTS =
+                newBestEffortPool("default-points", DEFAULT_POINTS_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -4,6 +4,10 @@ public class InternalTestHelper {
 
 	// Set this default up to 100,000 for testing
 	private static int internalUserNumber = 100;
+	// number of VisitedLocation generated for each internal user
+	private static int internalUserHistoryLength = 3;
+	// the same seed generates the same internal users
+	private static long internalUserSeed = System.nanoTime();
 	
 	public static void setInternalUserNumber(int internalUserNumber) {
 		InternalTestHelper.internalUserNumber = internalUserNumber;
@@ -12,4 +16,20 @@ public class InternalTestHelper {
 	public static int getInternalUserNumber() {
 		return internalUserNumber;
 	}
+	
+	public static void setInternalUserHistoryLength(int internalUserHistoryLength) {
+		InternalTestHelper.internalUserHistoryLength = internalUserHistoryLength;
+	}
+	
+	public static int getInternalUserHistoryLength() {
+		return internalUserHistoryLength;
+	}
+	
+	public static void setInternalUserSeed(long internalUserSeed) {
+		InternalTestHelper.internalUserSeed = internalUserSeed;
+	}
+	
+	public static long getInternalUserSeed() {
+		return internalUserSeed;
+	}
 }
@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide.helper;
+
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.User;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Generate the internal test users in parallel.
+ * Each User is generated from its own SplittableRandom, seeded from the seed of the generator and the index of the
+ * User: the same seed gives the same users, whatever the number of threads. The locations are written directly in the
+ * LocationHistory of the User, without VisitedLocation, Location or Date objects.
+ */
+public class InternalUserGenerator {
+    private static final double MAX_LATITUDE = 85.05112878;
+    private static final double MAX_LONGITUDE = 180;
+    private static final int HISTORY_DAYS = 30;
+
+    private final long seed;
+    private final int historyLength;
+    private final long referenceTime;
+
+    public InternalUserGenerator(long seed, int historyLength) {
+        this(seed, historyLength, System.currentTimeMillis());
+    }
+
+    public InternalUserGenerator(long seed, int historyLength, long referenceTime) {
+        this.seed = seed;
+        this.historyLength = historyLength;
+        this.referenceTime = referenceTime;
+    }
+
+    /**
+     * Generate users and give each one to a consumer, from several threads.
+     *
+     * @param userNumber the number of users.
+     * @param consumer   receives the users, must be thread-safe.
+     */
+    public void generate(int userNumber, Consumer<User> consumer) {
+        IntStream.range(0, userNumber).parallel().forEach(i -> consumer.accept(generate(i)));
+    }
+
+    /**
+     * Generate the User of an index.
+     *
+     * @param index of the User.
+     * @return the User internalUser followed by the index.
+     */
+    public User generate(int index) {
+        SplittableRandom random = new SplittableRandom(mix(seed + index * 0x9E3779B97F4A7C15L));
+        String userName = "internalUser" + index;
+        User user = new User(randomUUID(random), userName, "000", userName + "@tourGuide.com");
+        LocationHistory locationHistory = user.getLocationHistory();
+        for (int i = 0; i < historyLength; i++) {
+            locationHistory.add(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE),
+                    random.nextDouble(-MAX_LONGITUDE, MAX_LONGITUDE),
+                    referenceTime - TimeUnit.DAYS.toMillis(random.nextInt(HISTORY_DAYS)));
+        }
+        return user;
+    }
+
+    /**
+     * A version 4 UUID from the random generator, instead of the shared SecureRandom of UUID.randomUUID().
+     */
+    private static UUID randomUUID(SplittableRandom random) {
+        long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSignificantBits = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * Mix the bits of the seed, so that close indexes give unrelated generators.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
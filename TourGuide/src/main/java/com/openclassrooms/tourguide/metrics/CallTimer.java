@@ -0,0 +1,51 @@
+package com.openclassrooms.tourguide.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timer of the calls to one method of an external library, published as tourguide.external.calls with the tags
+ * service, method and outcome (success or error).
+ * The percentiles and histogram buckets are configured by the management.metrics.distribution properties.
+ */
+public class CallTimer {
+    public static final String NAME = "tourguide.external.calls";
+
+    private final Timer success;
+    private final Timer error;
+
+    public CallTimer(MeterRegistry meterRegistry, String service, String method) {
+        this.success = timer(meterRegistry, service, method, "success");
+        this.error = timer(meterRegistry, service, method, "error");
+    }
+
+    /**
+     * Call the method and record its duration, under the outcome error if it throws.
+     *
+     * @param call the call to the external library.
+     * @return the result of the call.
+     */
+    public <T> T record(Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            error.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String service, String method, String outcome) {
+        return Timer.builder(NAME)
+                .description("Time of the calls to the external libraries")
+                .tag("service", service)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
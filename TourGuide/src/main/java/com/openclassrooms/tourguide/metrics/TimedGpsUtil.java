@@ -0,0 +1,32 @@
+package com.openclassrooms.tourguide.metrics;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * GpsUtil timing the getUserLocation calls of another GpsUtil.
+ */
+public class TimedGpsUtil extends GpsUtil {
+    private final GpsUtil gpsUtil;
+    private final CallTimer getUserLocation;
+
+    public TimedGpsUtil(GpsUtil gpsUtil, MeterRegistry meterRegistry) {
+        this.gpsUtil = gpsUtil;
+        this.getUserLocation = new CallTimer(meterRegistry, "gpsUtil", "getUserLocation");
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return getUserLocation.record(() -> gpsUtil.getUserLocation(userId));
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return gpsUtil.getAttractions();
+    }
+}
@@ -0,0 +1,24 @@
+package com.openclassrooms.tourguide.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import rewardCentral.RewardCentral;
+
+import java.util.UUID;
+
+/**
+ * RewardCentral timing the getAttractionRewardPoints calls of another RewardCentral.
+ */
+public class TimedRewardCentral extends RewardCentral {
+    private final RewardCentral rewardCentral;
+    private final CallTimer getAttractionRewardPoints;
+
+    public TimedRewardCentral(RewardCentral rewardCentral, MeterRegistry meterRegistry) {
+        this.rewardCentral = rewardCentral;
+        this.getAttractionRewardPoints = new CallTimer(meterRegistry, "rewardCentral", "getAttractionRewardPoints");
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return getAttractionRewardPoints.record(() -> rewardCentral.getAttractionRewardPoints(attractionId, userId));
+    }
+}
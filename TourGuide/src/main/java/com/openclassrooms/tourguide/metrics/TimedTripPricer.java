@@ -0,0 +1,33 @@
+package com.openclassrooms.tourguide.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * TripPricer timing the getPrice calls of another TripPricer.
+ */
+public class TimedTripPricer extends TripPricer {
+    private final TripPricer tripPricer;
+    private final CallTimer getPrice;
+
+    public TimedTripPricer(TripPricer tripPricer, MeterRegistry meterRegistry) {
+        this.tripPricer = tripPricer;
+        this.getPrice = new CallTimer(meterRegistry, "tripPricer", "getPrice");
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                   int rewardsPoints) {
+        return getPrice.record(() -> tripPricer.getPrice(apiKey, attractionId, adults, children, nightsStay,
+                rewardsPoints));
+    }
+
+    @Override
+    public String getProviderName(String apiKey, int adults) {
+        return tripPricer.getProviderName(apiKey, adults);
+    }
+}
@@ -0,0 +1,161 @@
+package com.openclassrooms.tourguide.persistence;
+
+import com.openclassrooms.tourguide.user.LocationHistory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary format of the journal: every record is SIZE bytes, big-endian.
+ * <pre>
+ *  0  type          1 user, 2 location, 3 reward, 0 unused space at the end of a segment
+ *  1  field         user: 0 userName, 1 phoneNumber, 2 emailAddress
+ *  2  chunk         user: index of the chunk of the field
+ *  3  chunk length  user: bytes of the field in this chunk
+ *  4  int           user: total bytes of the field
+ *  8  long, long    userId
+ * 24  double        location and reward: latitude          user: TEXT_CAPACITY bytes of UTF-8
+ * 32  double        location and reward: longitude
+ * 40  long          location and reward: time in epoch milliseconds
+ * 48  int           reward: points
+ * 52  long          reward: attraction key, the FNV-1a hash of the UTF-8 attraction name
+ * 60  int           CRC32C of the bytes 0 to 59
+ * </pre>
+ * A field longer than TEXT_CAPACITY bytes is split in several user records.
+ * A reward refers to its Attraction by name, not by its position in the catalog, which changes when the catalog is
+ * reloaded with new attractions; the name does not fit in a record, so its 64 bits hash is written instead.
+ */
+final class JournalRecord {
+    static final int SIZE = 64;
+
+    static final byte EMPTY = 0;
+    static final byte USER = 1;
+    static final byte LOCATION = 2;
+    static final byte REWARD = 3;
+
+    static final int USER_NAME = 0;
+    static final int PHONE_NUMBER = 1;
+    static final int EMAIL_ADDRESS = 2;
+    static final int FIELD_COUNT = 3;
+
+    static final int TEXT_CAPACITY = 36;
+    static final int MAX_CHUNKS = 256;
+
+    static final int TYPE = 0;
+    static final int FIELD = 1;
+    static final int CHUNK = 2;
+    static final int CHUNK_LENGTH = 3;
+    static final int INT_VALUE = 4;
+    static final int USER_ID = 8;
+    static final int LATITUDE = 24;
+    static final int LONGITUDE = 32;
+    static final int TIME = 40;
+    static final int POINTS = 48;
+    static final int ATTRACTION_KEY = 52;
+    static final int TEXT = 24;
+    static final int CHECKSUM = 60;
+
+    private JournalRecord() {
+    }
+
+    static byte[] location(UUID userId, double latitude, double longitude, long time) {
+        ByteBuffer record = newRecord(LOCATION, userId);
+        record.putDouble(LATITUDE, latitude);
+        record.putDouble(LONGITUDE, longitude);
+        record.putLong(TIME, time);
+        return seal(record);
+    }
+
+    static byte[] reward(UUID userId, double latitude, double longitude, long time, long attractionKey, int points) {
+        ByteBuffer record = newRecord(REWARD, userId);
+        record.putLong(ATTRACTION_KEY, attractionKey);
+        record.putDouble(LATITUDE, latitude);
+        record.putDouble(LONGITUDE, longitude);
+        record.putLong(TIME, time);
+        record.putInt(POINTS, points);
+        return seal(record);
+    }
+
+    static List<byte[]> user(UUID userId, String userName, String phoneNumber, String emailAddress) {
+        List<byte[]> records = new ArrayList<>(FIELD_COUNT);
+        addField(records, userId, USER_NAME, userName);
+        addField(records, userId, PHONE_NUMBER, phoneNumber);
+        addField(records, userId, EMAIL_ADDRESS, emailAddress);
+        return records;
+    }
+
+    /**
+     * Find if a record is complete: written entirely and not corrupted.
+     *
+     * @param record   the SIZE bytes of the record.
+     * @param checksum a CRC32C to reuse.
+     * @return true if the checksum matches.
+     */
+    static boolean isValid(ByteBuffer record, CRC32C checksum) {
+        checksum.reset();
+        checksum.update(record.array(), record.arrayOffset(), CHECKSUM);
+        return (int) checksum.getValue() == record.getInt(CHECKSUM);
+    }
+
+    /**
+     * Get the key a reward record refers to an Attraction with.
+     *
+     * @param attractionName the name of the Attraction.
+     * @return the FNV-1a 64 bits hash of the UTF-8 name.
+     */
+    static long attractionKey(String attractionName) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : attractionName.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static long timeOf(Date timeVisited) {
+        return timeVisited == null ? LocationHistory.NO_TIME : timeVisited.getTime();
+    }
+
+    static UUID userId(ByteBuffer record) {
+        return new UUID(record.getLong(USER_ID), record.getLong(USER_ID + 8));
+    }
+
+    private static void addField(List<byte[]> records, UUID userId, int field, String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        int chunks = Math.max(1, (bytes.length + TEXT_CAPACITY - 1) / TEXT_CAPACITY);
+        if (chunks > MAX_CHUNKS) {
+            throw new IllegalArgumentException("Field of " + bytes.length + " bytes is too long for the journal");
+        }
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int offset = chunk * TEXT_CAPACITY;
+            int length = Math.min(TEXT_CAPACITY, bytes.length - offset);
+            ByteBuffer record = newRecord(USER, userId);
+            record.put(FIELD, (byte) field);
+            record.put(CHUNK, (byte) chunk);
+            record.put(CHUNK_LENGTH, (byte) length);
+            record.putInt(INT_VALUE, bytes.length);
+            record.put(TEXT, bytes, offset, length);
+            records.add(seal(record));
+        }
+    }
+
+    private static ByteBuffer newRecord(byte type, UUID userId) {
+        ByteBuffer record = ByteBuffer.allocate(SIZE);
+        record.put(TYPE, type);
+        record.putLong(USER_ID, userId.getMostSignificantBits());
+        record.putLong(USER_ID + 8, userId.getLeastSignificantBits());
+        return record;
+    }
+
+    private static byte[] seal(ByteBuffer record) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(record.array(), 0, CHECKSUM);
+        record.putInt(CHECKSUM, (int) checksum.getValue());
+        return record.array();
+    }
+}
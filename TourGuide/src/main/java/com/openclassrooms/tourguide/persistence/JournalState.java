@@ -0,0 +1,289 @@
+package com.openclassrooms.tourguide.persistence;
+
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * The users rebuilt from a sequence of journal records.
+ * Each part of the journal is parsed into its own JournalState, in parallel, then the parts are merged in the order
+ * of the journal: the locations of a later part go after the ones of an earlier part.
+ */
+final class JournalState {
+    // records parsed by one task of the replay
+    static final int PART_RECORDS = 1 << 16;
+
+    private final Map<UUID, ReplayedUser> users = new LinkedHashMap<>();
+    private long invalidRecords;
+
+    /**
+     * Parse a part of a journal file.
+     *
+     * @param file   the journal file.
+     * @param first  index of the first record of the part.
+     * @param count  number of records of the part.
+     * @return the state of the part.
+     */
+    static JournalState parse(Path file, long first, int count) {
+        JournalState state = new JournalState();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer part = channel.map(FileChannel.MapMode.READ_ONLY, first * JournalRecord.SIZE,
+                    (long) count * JournalRecord.SIZE);
+            ByteBuffer record = ByteBuffer.allocate(JournalRecord.SIZE);
+            CRC32C checksum = new CRC32C();
+            for (int i = 0; i < count; i++) {
+                part.get(i * JournalRecord.SIZE, record.array());
+                if (record.get(JournalRecord.TYPE) == JournalRecord.EMPTY) {
+                    continue;
+                }
+                if (!JournalRecord.isValid(record, checksum)) {
+                    state.invalidRecords++;
+                    continue;
+                }
+                state.apply(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return state;
+    }
+
+    /**
+     * Append the records of a later part of the journal.
+     *
+     * @param later the state of the later part.
+     */
+    void merge(JournalState later) {
+        later.users.forEach((userId, replayed) -> {
+            ReplayedUser current = users.get(userId);
+            if (current == null) {
+                users.put(userId, replayed);
+            } else {
+                current.merge(replayed);
+            }
+        });
+        invalidRecords += later.invalidRecords;
+    }
+
+    long getInvalidRecords() {
+        return invalidRecords;
+    }
+
+    int size() {
+        return users.size();
+    }
+
+    /**
+     * Create the User of the state. Users whose userName was never written are left out, and so are the rewards of
+     * an Attraction no longer in the catalog.
+     *
+     * @param attractions the catalog the attractions of the rewards are found in, by name.
+     * @return the users.
+     */
+    List<User> toUsers(List<Attraction> attractions) {
+        Map<Long, Attraction> attractionsByKey = new HashMap<>();
+        for (Attraction attraction : attractions) {
+            attractionsByKey.putIfAbsent(JournalRecord.attractionKey(attraction.attractionName), attraction);
+        }
+        List<User> result = new ArrayList<>(users.size());
+        for (ReplayedUser replayed : users.values()) {
+            if (replayed.fields[JournalRecord.USER_NAME] == null) {
+                continue;
+            }
+            User user = new User(replayed.userId, replayed.field(JournalRecord.USER_NAME),
+                    replayed.field(JournalRecord.PHONE_NUMBER), replayed.field(JournalRecord.EMAIL_ADDRESS));
+            user.getLocationHistory().addAll(replayed.locations);
+            for (ReplayedReward reward : replayed.rewards) {
+                Attraction attraction = attractionsByKey.get(reward.attractionKey);
+                if (attraction != null) {
+                    user.addUserReward(new UserReward(reward.toVisitedLocation(replayed.userId), attraction,
+                            reward.points));
+                }
+            }
+            result.add(user);
+        }
+        return result;
+    }
+
+    /**
+     * Write the state as a compact sequence of records: the fields of each user once, its locations, and its first
+     * reward for each attraction.
+     *
+     * @param channel to write to.
+     * @return the number of records written.
+     * @throws IOException if the channel cannot be written.
+     */
+    long write(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(JournalRecord.SIZE * 1024);
+        long records = 0;
+        for (ReplayedUser replayed : users.values()) {
+            List<byte[]> userRecords = new ArrayList<>();
+            if (replayed.fields[JournalRecord.USER_NAME] != null) {
+                userRecords.addAll(JournalRecord.user(replayed.userId, replayed.field(JournalRecord.USER_NAME),
+                        replayed.field(JournalRecord.PHONE_NUMBER), replayed.field(JournalRecord.EMAIL_ADDRESS)));
+            }
+            LocationHistory locations = replayed.locations;
+            for (int i = 0; i < locations.size(); i++) {
+                userRecords.add(JournalRecord.location(replayed.userId, locations.getLatitude(i),
+                        locations.getLongitude(i), locations.getTime(i)));
+            }
+            Set<Long> rewarded = new HashSet<>();
+            for (ReplayedReward reward : replayed.rewards) {
+                if (rewarded.add(reward.attractionKey)) {
+                    userRecords.add(JournalRecord.reward(replayed.userId, reward.latitude, reward.longitude,
+                            reward.time, reward.attractionKey, reward.points));
+                }
+            }
+            for (byte[] record : userRecords) {
+                if (!buffer.hasRemaining()) {
+                    drain(buffer, channel);
+                }
+                buffer.put(record);
+                records++;
+            }
+        }
+        drain(buffer, channel);
+        return records;
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void apply(ByteBuffer record) {
+        UUID userId = JournalRecord.userId(record);
+        ReplayedUser replayed = users.computeIfAbsent(userId, ReplayedUser::new);
+        switch (record.get(JournalRecord.TYPE)) {
+            case JournalRecord.USER -> replayed.addChunk(record);
+            case JournalRecord.LOCATION -> replayed.locations.add(record.getDouble(JournalRecord.LATITUDE),
+                    record.getDouble(JournalRecord.LONGITUDE), record.getLong(JournalRecord.TIME));
+            case JournalRecord.REWARD -> replayed.rewards.add(new ReplayedReward(record));
+            default -> invalidRecords++;
+        }
+    }
+
+    private static class ReplayedUser {
+        private final UUID userId;
+        private final Field[] fields = new Field[JournalRecord.FIELD_COUNT];
+        private final LocationHistory locations;
+        private final List<ReplayedReward> rewards = new ArrayList<>(0);
+
+        ReplayedUser(UUID userId) {
+            this.userId = userId;
+            this.locations = new LocationHistory(userId);
+        }
+
+        void addChunk(ByteBuffer record) {
+            int field = record.get(JournalRecord.FIELD);
+            if (field < 0 || field >= JournalRecord.FIELD_COUNT) {
+                return;
+            }
+            int chunk = record.get(JournalRecord.CHUNK) & 0xFF;
+            int totalLength = record.getInt(JournalRecord.INT_VALUE);
+            // the first chunk starts a new value of the field
+            if (fields[field] == null || chunk == 0 || fields[field].bytes.length != totalLength) {
+                fields[field] = new Field(totalLength);
+            }
+            fields[field].put(record, chunk);
+        }
+
+        String field(int field) {
+            return fields[field] == null ? null : new String(fields[field].bytes, StandardCharsets.UTF_8);
+        }
+
+        void merge(ReplayedUser later) {
+            for (int field = 0; field < JournalRecord.FIELD_COUNT; field++) {
+                Field value = later.fields[field];
+                if (value == null) {
+                    continue;
+                }
+                if (fields[field] == null || value.startsNewValue() || fields[field].bytes.length != value.bytes.length) {
+                    fields[field] = value;
+                } else {
+                    value.copyChunksInto(fields[field]);
+                }
+            }
+            locations.addAll(later.locations);
+            rewards.addAll(later.rewards);
+        }
+    }
+
+    private static class Field {
+        private final byte[] bytes;
+        private final BitSet chunks = new BitSet();
+
+        Field(int length) {
+            this.bytes = new byte[length];
+        }
+
+        void put(ByteBuffer record, int chunk) {
+            int length = record.get(JournalRecord.CHUNK_LENGTH) & 0xFF;
+            int offset = chunk * JournalRecord.TEXT_CAPACITY;
+            if (offset + length <= bytes.length) {
+                record.get(JournalRecord.TEXT, bytes, offset, length);
+                chunks.set(chunk);
+            }
+        }
+
+        boolean startsNewValue() {
+            return chunks.get(0);
+        }
+
+        void copyChunksInto(Field target) {
+            chunks.stream().forEach(chunk -> {
+                int offset = chunk * JournalRecord.TEXT_CAPACITY;
+                int length = Math.min(JournalRecord.TEXT_CAPACITY, bytes.length - offset);
+                System.arraycopy(bytes, offset, target.bytes, offset, length);
+                target.chunks.set(chunk);
+            });
+        }
+    }
+
+    private static class ReplayedReward {
+        private final double latitude;
+        private final double longitude;
+        private final long time;
+        private final long attractionKey;
+        private final int points;
+
+        ReplayedReward(ByteBuffer record) {
+            this.latitude = record.getDouble(JournalRecord.LATITUDE);
+            this.longitude = record.getDouble(JournalRecord.LONGITUDE);
+            this.time = record.getLong(JournalRecord.TIME);
+            this.attractionKey = record.getLong(JournalRecord.ATTRACTION_KEY);
+            this.points = record.getInt(JournalRecord.POINTS);
+        }
+
+        VisitedLocation toVisitedLocation(UUID userId) {
+            return new VisitedLocation(userId, new Location(latitude, longitude),
+                    time == LocationHistory.NO_TIME ? null : new Date(time));
+        }
+    }
+}
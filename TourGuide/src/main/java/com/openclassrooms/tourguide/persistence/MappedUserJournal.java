@@ -0,0 +1,467 @@
+package com.openclassrooms.tourguide.persistence;
+
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * UserJournal written to memory-mapped segment files of fixed size records (see JournalRecord).
+ * <p>
+ * The append methods encode the record and put it in a queue. A single writer thread takes the records in batches,
+ * copies them in the mapped segment and forces the batch to the disk once: this group commit makes one disk write for
+ * many records, and the tracker never waits for it unless the queue is full. A record appended once the journal is
+ * closing, or once the writer is gone, is dropped and counted instead of waiting for it.
+ * <p>
+ * A segment file is named after the range of segment numbers it holds, journal-first-last.seg. When the active
+ * segment is full it is sealed and the next one is created; on close it is truncated to its records. Once compactionThreshold segments are sealed, a
+ * background thread replays them and writes one compacted file for their range, which drops the repeated user fields,
+ * the duplicated rewards and the unused space, then deletes them.
+ * <p>
+ * On startup the files are replayed in parallel, in parts of JournalState.PART_RECORDS records, and the parts are
+ * merged in the order of the journal. Records with a wrong checksum, such as a record torn by a crash, are skipped.
+ * The appends of this run go to a new segment, after all the replayed ones.
+ */
+public class MappedUserJournal implements UserJournal {
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)-(\\d+)\\.seg");
+    private static final int MAX_BATCH = 4096;
+    private static final long OFFER_MILLIS = 100;
+    private static final byte[] END = new byte[0];
+
+    private Logger logger = LoggerFactory.getLogger(MappedUserJournal.class);
+    private final Path directory;
+    private final int segmentRecords;
+    private final int compactionThreshold;
+    private final BlockingQueue<byte[]> pending;
+    private final Thread writer;
+    private final ExecutorService compactor;
+    private final Object commitLock = new Object();
+    // appends hold the read lock from their check of closed to their put, close takes the write lock to set it
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private final AtomicLong appended = new AtomicLong();
+    private long committed;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    // sealed segment files, ordered by range; the active segment is not in the list
+    private final List<Segment> sealed = new ArrayList<>();
+    private FileChannel activeChannel;
+    private MappedByteBuffer activeBuffer;
+    private long activeNumber;
+    private int activeRecords;
+    private boolean failed;
+
+    public MappedUserJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_RECORDS, DEFAULT_COMPACTION_THRESHOLD, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public MappedUserJournal(Path directory, int segmentRecords, int compactionThreshold, int queueCapacity)
+            throws IOException {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.compactionThreshold = Math.max(2, compactionThreshold);
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        Files.createDirectories(directory);
+        recover();
+        activeNumber = sealed.isEmpty() ? 1 : sealed.get(sealed.size() - 1).last + 1;
+        openSegment();
+
+        compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer = new Thread(this::write, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void appendUser(User user) {
+        JournalRecord.user(user.getUserId(), user.getUserName(), user.getPhoneNumber(), user.getEmailAddress())
+                .forEach(this::append);
+    }
+
+    @Override
+    public void appendLocation(UUID userId, VisitedLocation visitedLocation) {
+        append(JournalRecord.location(userId, visitedLocation.location.latitude, visitedLocation.location.longitude,
+                JournalRecord.timeOf(visitedLocation.timeVisited)));
+    }
+
+    @Override
+    public void appendReward(UUID userId, VisitedLocation visitedLocation, String attractionName, int rewardPoints) {
+        append(JournalRecord.reward(userId, visitedLocation.location.latitude, visitedLocation.location.longitude,
+                JournalRecord.timeOf(visitedLocation.timeVisited), JournalRecord.attractionKey(attractionName),
+                rewardPoints));
+    }
+
+    @Override
+    public List<User> replay(List<Attraction> attractions) {
+        long start = System.nanoTime();
+        JournalState state;
+        synchronized (sealed) {
+            state = read(new ArrayList<>(sealed));
+        }
+        List<User> users = state.toUsers(attractions);
+        logger.info("Replayed %d users from the journal in %d ms, %d invalid records skipped".formatted(users.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), state.getInvalidRecords()));
+        compactor.execute(this::compact);
+        return users;
+    }
+
+    @Override
+    public void flush() {
+        long target = appended.get();
+        synchronized (commitLock) {
+            while (committed < target && writer.isAlive()) {
+                try {
+                    commitLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        // no append is in progress anymore: END is the last record of the queue
+        try {
+            if (enqueue(END)) {
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) {
+            logger.warn("%d journal records were not written".formatted(dropped.get()));
+        }
+    }
+
+    /**
+     * Get the number of segment files, sealed and active.
+     *
+     * @return the number of files.
+     */
+    public int getSegmentCount() {
+        synchronized (sealed) {
+            return sealed.size() + 1;
+        }
+    }
+
+    /**
+     * Get the number of records appended since the journal was opened.
+     *
+     * @return the number of records.
+     */
+    public long getAppendedRecords() {
+        return appended.get();
+    }
+
+    /**
+     * Get the number of records not written: appended after close, after the writer stopped, or while the segment
+     * could not be written.
+     *
+     * @return the number of records.
+     */
+    public long getDroppedRecords() {
+        return dropped.get();
+    }
+
+    /**
+     * Queue a record for the writer. Waits only when the writer is queueCapacity records behind.
+     */
+    private void append(byte[] record) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            appended.incrementAndGet();
+            if (!enqueue(record)) {
+                committed(1);
+                dropped.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            committed(1);
+            dropped.incrementAndGet();
+            Thread.currentThread().interrupt();
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Put a record in the queue, waiting for a place as long as the writer is alive.
+     *
+     * @return false if the writer stopped before the record could be queued.
+     */
+    private boolean enqueue(byte[] record) throws InterruptedException {
+        while (!pending.offer(record, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write() {
+        List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+        boolean end = false;
+        while (!end) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            pending.drainTo(batch, MAX_BATCH - 1);
+            int written = 0;
+            int batchStart = activeRecords;
+            for (byte[] record : batch) {
+                if (record == END) {
+                    end = true;
+                    continue;
+                }
+                written++;
+                if (failed) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                try {
+                    if (activeRecords == segmentRecords) {
+                        force(batchStart);
+                        rollSegment();
+                        batchStart = 0;
+                    }
+                    activeBuffer.put(activeRecords * JournalRecord.SIZE, record);
+                    activeRecords++;
+                } catch (IOException | UncheckedIOException e) {
+                    logger.error("Journal writes stopped: %s".formatted(e));
+                    failed = true;
+                    dropped.incrementAndGet();
+                }
+            }
+            if (!failed) {
+                force(batchStart);
+            }
+            committed(written);
+            batch.clear();
+        }
+        closeActiveSegment();
+    }
+
+    private void force(int fromRecord) {
+        int length = (activeRecords - fromRecord) * JournalRecord.SIZE;
+        if (length > 0) {
+            activeBuffer.force(fromRecord * JournalRecord.SIZE, length);
+        }
+    }
+
+    private void committed(int records) {
+        synchronized (commitLock) {
+            committed += records;
+            commitLock.notifyAll();
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        closeActiveSegment();
+        synchronized (sealed) {
+            sealed.add(new Segment(directory.resolve(segmentName(activeNumber, activeNumber)), activeNumber, activeNumber));
+        }
+        activeNumber++;
+        openSegment();
+        compactor.execute(this::compact);
+    }
+
+    private void openSegment() throws IOException {
+        Path path = directory.resolve(segmentName(activeNumber, activeNumber));
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        activeBuffer = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * JournalRecord.SIZE);
+        activeRecords = 0;
+    }
+
+    private void closeActiveSegment() {
+        try {
+            activeBuffer.force();
+            // the unused end of the mapping is cut, so that each run leaves only the records it wrote
+            activeChannel.truncate((long) activeRecords * JournalRecord.SIZE);
+            activeChannel.close();
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Could not close the journal segment %d: %s".formatted(activeNumber, e));
+        }
+    }
+
+    /**
+     * Replace the sealed segments by a single compacted file, when there are enough of them.
+     */
+    private void compact() {
+        List<Segment> inputs;
+        synchronized (sealed) {
+            if (sealed.size() < compactionThreshold) {
+                return;
+            }
+            inputs = new ArrayList<>(sealed);
+        }
+        long start = System.nanoTime();
+        Segment output = new Segment(directory.resolve(segmentName(inputs.get(0).first,
+                inputs.get(inputs.size() - 1).last)), inputs.get(0).first, inputs.get(inputs.size() - 1).last);
+        Path temporary = output.path.resolveSibling(output.path.getFileName() + ".tmp");
+        try {
+            JournalState state = read(inputs);
+            long records;
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                records = state.write(channel);
+                channel.force(true);
+            }
+            Files.move(temporary, output.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (sealed) {
+                sealed.removeAll(inputs);
+                sealed.add(0, output);
+            }
+            for (Segment input : inputs) {
+                if (!input.path.equals(output.path)) {
+                    Files.deleteIfExists(input.path);
+                }
+            }
+            logger.debug("Compacted %d journal segments into %d records in %d ms".formatted(inputs.size(), records,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Journal compaction failed: %s".formatted(e));
+        }
+    }
+
+    /**
+     * Parse the segments in parallel parts, and merge the parts in order.
+     */
+    private JournalState read(List<Segment> segments) {
+        List<JournalState> parts = segments.stream()
+                .flatMap(this::parts)
+                .collect(Collectors.toList())
+                .parallelStream()
+                .map(part -> JournalState.parse(part.path, part.first, part.count))
+                .collect(Collectors.toList());
+        JournalState state = new JournalState();
+        parts.forEach(state::merge);
+        return state;
+    }
+
+    private Stream<Part> parts(Segment segment) {
+        long records;
+        try {
+            records = Files.size(segment.path) / JournalRecord.SIZE;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return LongStream.iterate(0, first -> first < records, first -> first + JournalState.PART_RECORDS)
+                .mapToObj(first -> new Part(segment.path, first,
+                        (int) Math.min(JournalState.PART_RECORDS, records - first)));
+    }
+
+    /**
+     * List the segment files left by the previous runs. A file whose range is inside the range of another one was
+     * already compacted, and a temporary file is an interrupted compaction: both are deleted.
+     */
+    private void recover() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.collect(Collectors.toList())) {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(new Segment(path, Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))));
+                } else if (path.getFileName().toString().endsWith(".seg.tmp")) {
+                    Files.delete(path);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong((Segment segment) -> segment.first)
+                .thenComparing(segment -> -segment.last));
+        long covered = 0;
+        for (Segment segment : segments) {
+            if (segment.last <= covered) {
+                Files.delete(segment.path);
+            } else {
+                sealed.add(segment);
+                covered = segment.last;
+            }
+        }
+    }
+
+    private static String segmentName(long first, long last) {
+        return "journal-%010d-%010d.seg".formatted(first, last);
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final long first;
+        private final long last;
+
+        Segment(Path path, long first, long last) {
+            this.path = path;
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    private static class Part {
+        private final Path path;
+        private final long first;
+        private final int count;
+
+        Part(Path path, long first, int count) {
+            this.path = path;
+            this.first = first;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide.persistence;
+
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Append-only record of the users, of their VisitedLocation and of their UserReward, replayed on startup.
+ * The append methods only queue the record: they never wait for the disk, so they can be called from the tracker.
+ */
+public interface UserJournal {
+
+    /**
+     * Append the userName, phoneNumber and emailAddress of a User.
+     *
+     * @param user the User.
+     */
+    void appendUser(User user);
+
+    /**
+     * Append a VisitedLocation of a User.
+     *
+     * @param userId          of the User.
+     * @param visitedLocation the VisitedLocation.
+     */
+    void appendLocation(UUID userId, VisitedLocation visitedLocation);
+
+    /**
+     * Append a UserReward of a User.
+     *
+     * @param userId          of the User.
+     * @param visitedLocation the VisitedLocation of the reward.
+     * @param attractionName  the name of the Attraction, which stays the same across the versions of the catalog.
+     * @param rewardPoints    the points of the reward.
+     */
+    void appendReward(UUID userId, VisitedLocation visitedLocation, String attractionName, int rewardPoints);
+
+    /**
+     * Rebuild the users from the records written by the previous runs.
+     *
+     * @param attractions the catalog the attractions of the rewards are found in, by name.
+     * @return the users, empty if there is nothing to replay.
+     */
+    List<User> replay(List<Attraction> attractions);
+
+    /**
+     * Wait until every record appended so far is written to the disk.
+     */
+    void flush();
+
+    /**
+     * Write the pending records and release the files.
+     */
+    void close();
+
+    /**
+     * Get a journal that records nothing.
+     *
+     * @return the disabled UserJournal.
+     */
+    static UserJournal disabled() {
+        return DisabledUserJournal.INSTANCE;
+    }
+
+    final class DisabledUserJournal implements UserJournal {
+        private static final UserJournal INSTANCE = new DisabledUserJournal();
+
+        private DisabledUserJournal() {
+        }
+
+        @Override
+        public void appendUser(User user) {
+        }
+
+        @Override
+        public void appendLocation(UUID userId, VisitedLocation visitedLocation) {
+        }
+
+        @Override
+        public void appendReward(UUID userId, VisitedLocation visitedLocation, String attractionName, int rewardPoints) {
+        }
+
+        @Override
+        public List<User> replay(List<Attraction> attractions) {
+            return List.of();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
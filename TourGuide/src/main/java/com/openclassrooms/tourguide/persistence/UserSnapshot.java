@@ -0,0 +1,360 @@
+package com.openclassrooms.tourguide.persistence;
+
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Point-in-time copy of all the users in a binary file: their fields, UserPreferences, VisitedLocation and UserReward.
+ * <p>
+ * The file starts with MAGIC, VERSION, the number of users and the time of the snapshot, then holds blocks of up to
+ * BLOCK_USERS users, each one prefixed by its length in bytes and its number of users. Strings are an unsigned short
+ * length followed by UTF-8, -1 for null; times are epoch milliseconds, Long.MIN_VALUE for null; a UserReward refers
+ * to its Attraction by name, as the attractionId changes with every call to gpsUtil.
+ * <p>
+ * A snapshot is written while the users are tracked: each User is copied on its own, so the snapshot is consistent per
+ * User but not across users. It is written to a temporary file then moved over the previous one, and the blocks are
+ * restored in parallel.
+ */
+public class UserSnapshot {
+    private static final int MAGIC = 0x54475553;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final int BLOCK_USERS = 4096;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private Logger logger = LoggerFactory.getLogger(UserSnapshot.class);
+    private final Path file;
+    private final long intervalSeconds;
+    private ScheduledExecutorService scheduler;
+    private Supplier<Collection<User>> users;
+
+    public UserSnapshot(Path file, long intervalSeconds) {
+        this.file = file;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * Get a snapshot that never exists and writes nothing.
+     *
+     * @return the disabled UserSnapshot.
+     */
+    public static UserSnapshot disabled() {
+        return new UserSnapshot(null, 0);
+    }
+
+    /**
+     * Find if there is a snapshot to restore.
+     *
+     * @return true if the snapshot file exists.
+     */
+    public boolean exists() {
+        return file != null && Files.isRegularFile(file);
+    }
+
+    /**
+     * Write a snapshot every intervalSeconds on a background thread, and a last one on close.
+     *
+     * @param users gives the users to write, iterated without being copied.
+     */
+    public synchronized void start(Supplier<Collection<User>> users) {
+        if (file == null || scheduler != null) {
+            return;
+        }
+        this.users = users;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(this::writeQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the background snapshots and write a last one.
+     */
+    public void close() {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = scheduler;
+            scheduler = null;
+        }
+        if (current == null) {
+            return;
+        }
+        current.shutdown();
+        try {
+            current.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeQuietly();
+    }
+
+    /**
+     * Write a snapshot of the users.
+     *
+     * @param users the users to write.
+     * @return the number of users written.
+     * @throws IOException if the snapshot cannot be written, the previous one is then kept.
+     */
+    public synchronized int write(Collection<User> users) throws IOException {
+        if (file == null) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_BYTES);
+            BlockOutput block = new BlockOutput();
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                int blockUsers = 0;
+                while (blockUsers < BLOCK_USERS && iterator.hasNext()) {
+                    writeUser(block.data, iterator.next());
+                    blockUsers++;
+                }
+                block.writeTo(channel, blockUsers);
+                count += blockUsers;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putLong(System.currentTimeMillis()).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.debug("Snapshot of %d users written in %d ms".formatted(count,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        return count;
+    }
+
+    /**
+     * Read the users of the snapshot.
+     *
+     * @param attractions the catalog to find the Attraction of the UserReward in.
+     * @return the users, empty if there is no snapshot.
+     * @throws IOException if the snapshot cannot be read.
+     */
+    public List<User> read(List<Attraction> attractions) throws IOException {
+        if (!exists()) {
+            return List.of();
+        }
+        Map<String, Attraction> attractionsByName = attractions.stream()
+                .collect(Collectors.toMap(attraction -> attraction.attractionName, Function.identity(), (a, b) -> a));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a user snapshot: " + file);
+            }
+            int count = header.getInt();
+
+            List<long[]> blocks = new ArrayList<>();
+            ByteBuffer blockHeader = ByteBuffer.allocate(8);
+            long position = HEADER_BYTES;
+            while (position < channel.size()) {
+                blockHeader.clear();
+                channel.read(blockHeader, position);
+                blockHeader.flip();
+                int length = blockHeader.getInt();
+                blocks.add(new long[]{position + 8, length});
+                position += 8 + length;
+            }
+
+            List<User> result = new ArrayList<>(count);
+            blocks.parallelStream()
+                    .map(block -> readBlock(channel, block[0], (int) block[1], attractionsByName))
+                    .collect(Collectors.toList())
+                    .forEach(result::addAll);
+            return result;
+        }
+    }
+
+    private void writeQuietly() {
+        Supplier<Collection<User>> current = users;
+        if (current == null) {
+            return;
+        }
+        try {
+            write(current.get());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not write the user snapshot: %s".formatted(e));
+        }
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeLong(user.getUserId().getMostSignificantBits());
+        out.writeLong(user.getUserId().getLeastSignificantBits());
+        writeString(out, user.getUserName());
+        writeString(out, user.getPhoneNumber());
+        writeString(out, user.getEmailAddress());
+        writeTime(out, user.getLatestLocationTimestamp());
+
+        UserPreferences preferences = user.getUserPreferences();
+        out.writeInt(preferences.getAttractionProximity());
+        out.writeInt(preferences.getTripDuration());
+        out.writeInt(preferences.getTicketQuantity());
+        out.writeInt(preferences.getNumberOfAdults());
+        out.writeInt(preferences.getNumberOfChildren());
+
+        LocationHistory locations = user.getLocationHistory().copy();
+        out.writeInt(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            out.writeDouble(locations.getLatitude(i));
+            out.writeDouble(locations.getLongitude(i));
+            out.writeLong(locations.getTime(i));
+        }
+
+        List<UserReward> rewards = List.copyOf(user.getUserRewards());
+        out.writeInt(rewards.size());
+        for (UserReward reward : rewards) {
+            writeString(out, reward.attraction.attractionName);
+            out.writeInt(reward.getRewardPoints());
+            out.writeDouble(reward.visitedLocation.location.latitude);
+            out.writeDouble(reward.visitedLocation.location.longitude);
+            writeTime(out, reward.visitedLocation.timeVisited);
+        }
+    }
+
+    private static List<User> readBlock(FileChannel channel, long position, int length,
+                                        Map<String, Attraction> attractionsByName) {
+        ByteBuffer in;
+        try {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<User> users = new ArrayList<>(BLOCK_USERS);
+        while (in.hasRemaining()) {
+            UUID userId = new UUID(in.getLong(), in.getLong());
+            User user = new User(userId, readString(in), readString(in), readString(in));
+            user.setLatestLocationTimestamp(readTime(in));
+
+            UserPreferences preferences = user.getUserPreferences();
+            preferences.setAttractionProximity(in.getInt());
+            preferences.setTripDuration(in.getInt());
+            preferences.setTicketQuantity(in.getInt());
+            preferences.setNumberOfAdults(in.getInt());
+            preferences.setNumberOfChildren(in.getInt());
+
+            LocationHistory locations = user.getLocationHistory();
+            int locationCount = in.getInt();
+            for (int i = 0; i < locationCount; i++) {
+                locations.add(in.getDouble(), in.getDouble(), in.getLong());
+            }
+
+            int rewardCount = in.getInt();
+            for (int i = 0; i < rewardCount; i++) {
+                Attraction attraction = attractionsByName.get(readString(in));
+                int points = in.getInt();
+                VisitedLocation visitedLocation = new VisitedLocation(userId, new Location(in.getDouble(), in.getDouble()),
+                        readTime(in));
+                if (attraction != null) {
+                    user.addUserReward(new UserReward(visitedLocation, attraction, points));
+                }
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= 0xFFFF) {
+            throw new IOException("String of " + bytes.length + " bytes is too long for the snapshot");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == 0xFFFF) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, Date time) throws IOException {
+        out.writeLong(time == null ? NO_TIME : time.getTime());
+    }
+
+    private static Date readTime(ByteBuffer in) {
+        long time = in.getLong();
+        return time == NO_TIME ? null : new Date(time);
+    }
+
+    /**
+     * Buffer of the block being written, reused from one block to the next.
+     */
+    private static class BlockOutput {
+        private final ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream();
+        private final DataOutputStream data = new DataOutputStream(bytes);
+
+        void writeTo(FileChannel channel, int users) throws IOException {
+            data.flush();
+            ByteBuffer blockHeader = ByteBuffer.allocate(8);
+            blockHeader.putInt(bytes.size()).putInt(users).flip();
+            writeFully(channel, blockHeader);
+            writeFully(channel, ByteBuffer.wrap(bytes.buffer(), 0, bytes.size()));
+            bytes.reset();
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.openclassrooms.tourguide.repository;
+
+import com.openclassrooms.tourguide.user.User;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * UserRepository kept in memory in two ConcurrentHashMap: reads never lock, and writes only lock one bin of each map.
+ * The userName map decides which User is added; the userId index is updated right after.
+ */
+@Repository
+public class InMemoryUserRepository implements UserRepository {
+    private final ConcurrentMap<String, User> usersByName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, User> usersById = new ConcurrentHashMap<>();
+    private final Collection<User> users = Collections.unmodifiableCollection(usersByName.values());
+
+    @Override
+    public User getUser(String userName) {
+        return usersByName.get(userName);
+    }
+
+    @Override
+    public User getUserById(UUID userId) {
+        return usersById.get(userId);
+    }
+
+    @Override
+    public boolean addUser(User user) {
+        if (usersByName.putIfAbsent(user.getUserName(), user) != null) {
+            return false;
+        }
+        usersById.put(user.getUserId(), user);
+        return true;
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return new ArrayList<>(usersByName.values());
+    }
+
+    @Override
+    public Collection<User> users() {
+        return users;
+    }
+
+    @Override
+    public int size() {
+        return usersByName.size();
+    }
+}
@@ -0,0 +1,69 @@
+package com.openclassrooms.tourguide.repository;
+
+import com.openclassrooms.tourguide.user.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Storage of the User, indexed by userName and by userId.
+ */
+public interface UserRepository {
+
+    /**
+     * Get the User with userName.
+     *
+     * @param userName of the User to get.
+     * @return the User, or null if none.
+     */
+    User getUser(String userName);
+
+    /**
+     * Get the User with userId.
+     *
+     * @param userId of the User to get.
+     * @return the User, or null if none.
+     */
+    User getUserById(UUID userId);
+
+    /**
+     * Add a User, unless a User with the same userName already exists.
+     *
+     * @param user to add.
+     * @return true if the User was added.
+     */
+    boolean addUser(User user);
+
+    /**
+     * Get a list of all the User. The list is a copy, prefer users() or stream() to iterate over many users.
+     *
+     * @return a new list of all User.
+     */
+    List<User> getAllUsers();
+
+    /**
+     * Get a view of all the User, without copy. Its iterators and spliterators are weakly consistent: they never
+     * fail on concurrent additions, and may or may not see them.
+     *
+     * @return an unmodifiable view of all User.
+     */
+    Collection<User> users();
+
+    /**
+     * Get a stream of all the User, without copy, which can be made parallel.
+     *
+     * @return a weakly consistent stream of User.
+     */
+    default Stream<User> stream() {
+        return users().stream();
+    }
+
+    /**
+     * Get the number of User.
+     *
+     * @return the number of User.
+     */
+    int size();
+}
@@ -0,0 +1,102 @@
+package com.openclassrooms.tourguide.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit of the calls in progress to an external library, adjusted by AIMD on their latency: a call slower than the
+ * latency threshold, or failed, multiplies the limit by the backoff ratio; a fast call made while the limit was at
+ * least half used adds one to the limit, at most once per limit calls. The limit stays within [minLimit, maxLimit].
+ * The backoff is applied once per congestion event: the slow or failed calls that started before the last backoff
+ * were caught in the same event, and do not back off again.
+ * A caller over the limit waits for a call to end, at most the acquire timeout.
+ */
+public class AdaptiveLimiter {
+    public static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private boolean backedOff;
+    private long lastBackoffNanos;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Take a place for a call, waiting for one at most timeoutNanos.
+     *
+     * @param timeoutNanos the maximum wait.
+     * @return false if no place was available in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean tryAcquire(long timeoutNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long remaining = timeoutNanos;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back the place of an ended call and adjust the limit with its outcome.
+     *
+     * @param latencyNanos the duration of the call.
+     * @param failed       true if the call failed.
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (failed || latencyNanos > latencyThresholdNanos) {
+                if (!backedOff || now - latencyNanos - lastBackoffNanos > 0) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    backedOff = true;
+                    lastBackoffNanos = now;
+                }
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
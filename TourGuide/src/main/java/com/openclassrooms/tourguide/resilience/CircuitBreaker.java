@@ -0,0 +1,81 @@
+package com.openclassrooms.tourguide.resilience;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of an external library. Closed, every call is allowed; after failureThreshold consecutive failures
+ * it opens and refuses every call for openDuration; then it lets one trial call through (half-open), which closes it
+ * on success or opens it again on failure.
+ */
+public class CircuitBreaker {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInProgress;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Find if a call may be made now. In half-open state only the first caller is allowed, as the trial call.
+     *
+     * @return true if the call is allowed, it must then be followed by onSuccess or onFailure.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInProgress = false;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInProgress) {
+                    yield false;
+                }
+                trialInProgress = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+        trialInProgress = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * End an allowed call that was not made after all: neither a success nor a failure, a half-open circuit lets
+     * the next caller make the trial call.
+     */
+    public synchronized void onCancel() {
+        trialInProgress = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,103 @@
+package com.openclassrooms.tourguide.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Protection of the calls to one external library: its CircuitBreaker first, then its AdaptiveLimiter. A refused call
+ * throws a DependencyUnavailableException without calling the library.
+ * Published with the tag service: the gauges tourguide.dependency.limit, tourguide.dependency.inflight and
+ * tourguide.dependency.circuit (0 closed, 1 open, 2 half-open), and the counter tourguide.dependency.rejected with
+ * the tag reason (circuit or limit).
+ */
+public class DependencyGuard {
+    private final String service;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveLimiter limiter;
+    private final long acquireTimeoutNanos;
+    private final Counter circuitRejections;
+    private final Counter limitRejections;
+
+    public DependencyGuard(String service, CircuitBreaker circuitBreaker, AdaptiveLimiter limiter,
+                           long acquireTimeoutMillis, MeterRegistry meterRegistry) {
+        this.service = service;
+        this.circuitBreaker = circuitBreaker;
+        this.limiter = limiter;
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        Gauge.builder("tourguide.dependency.limit", limiter, AdaptiveLimiter::getLimit)
+                .description("Maximum number of calls in progress to the external library")
+                .tag("service", service)
+                .register(meterRegistry);
+        Gauge.builder("tourguide.dependency.inflight", limiter, AdaptiveLimiter::getInFlight)
+                .description("Calls in progress to the external library")
+                .tag("service", service)
+                .register(meterRegistry);
+        Gauge.builder("tourguide.dependency.circuit", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("State of the circuit of the external library: 0 closed, 1 open, 2 half-open")
+                .tag("service", service)
+                .register(meterRegistry);
+        this.circuitRejections = rejections(meterRegistry, service, "circuit");
+        this.limitRejections = rejections(meterRegistry, service, "limit");
+    }
+
+    /**
+     * Make the call if the circuit and the limit allow it.
+     *
+     * @param call the call to the external library.
+     * @return the result of the call.
+     * @throws DependencyUnavailableException if the call was refused.
+     */
+    public <T> T call(Supplier<T> call) {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitRejections.increment();
+            throw new DependencyUnavailableException(service, "circuit open");
+        }
+        boolean acquired;
+        try {
+            acquired = limiter.tryAcquire(acquireTimeoutNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            circuitBreaker.onCancel();
+            limitRejections.increment();
+            throw new DependencyUnavailableException(service, "concurrency limit reached");
+        }
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = call.get();
+            succeeded = true;
+            return result;
+        } finally {
+            // an Error counts as a failure too, so that the permit and a half-open trial are never left behind
+            limiter.release(System.nanoTime() - start, !succeeded);
+            if (succeeded) {
+                circuitBreaker.onSuccess();
+            } else {
+                circuitBreaker.onFailure();
+            }
+        }
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String service, String reason) {
+        return Counter.builder("tourguide.dependency.rejected")
+                .description("Calls to the external library refused without calling it")
+                .tag("service", service)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,20 @@
+package com.openclassrooms.tourguide.resilience;
+
+/**
+ * A call to an external library refused without calling it: its circuit is open, or its concurrency limit stayed
+ * reached for longer than the acquire timeout.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String service;
+
+    public DependencyUnavailableException(String service, String reason) {
+        super(service + " unavailable: " + reason);
+        this.service = service;
+    }
+
+    public String getService() {
+        return service;
+    }
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.tourguide.resilience;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * GpsUtil making the getUserLocation calls of another GpsUtil through a DependencyGuard.
+ */
+public class GuardedGpsUtil extends GpsUtil {
+    private final GpsUtil gpsUtil;
+    private final DependencyGuard guard;
+
+    public GuardedGpsUtil(GpsUtil gpsUtil, DependencyGuard guard) {
+        this.gpsUtil = gpsUtil;
+        this.guard = guard;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return guard.call(() -> gpsUtil.getUserLocation(userId));
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return gpsUtil.getAttractions();
+    }
+}
@@ -0,0 +1,23 @@
+package com.openclassrooms.tourguide.resilience;
+
+import rewardCentral.RewardCentral;
+
+import java.util.UUID;
+
+/**
+ * RewardCentral making the getAttractionRewardPoints calls of another RewardCentral through a DependencyGuard.
+ */
+public class GuardedRewardCentral extends RewardCentral {
+    private final RewardCentral rewardCentral;
+    private final DependencyGuard guard;
+
+    public GuardedRewardCentral(RewardCentral rewardCentral, DependencyGuard guard) {
+        this.rewardCentral = rewardCentral;
+        this.guard = guard;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return guard.call(() -> rewardCentral.getAttractionRewardPoints(attractionId, userId));
+    }
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.tourguide.resilience;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * TripPricer making the getPrice calls of another TripPricer through a DependencyGuard.
+ */
+public class GuardedTripPricer extends TripPricer {
+    private final TripPricer tripPricer;
+    private final DependencyGuard guard;
+
+    public GuardedTripPricer(TripPricer tripPricer, DependencyGuard guard) {
+        this.tripPricer = tripPricer;
+        this.guard = guard;
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                   int rewardsPoints) {
+        return guard.call(() -> tripPricer.getPrice(apiKey, attractionId, adults, children, nightsStay,
+                rewardsPoints));
+    }
+
+    @Override
+    public String getProviderName(String apiKey, int adults) {
+        return tripPricer.getProviderName(apiKey, adults);
+    }
+}
@@ -1,90 +1,182 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.DistanceEngine;
+import com.openclassrooms.tourguide.attraction.ProximityGrid;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.persistence.UserJournal;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import rewardCentral.RewardCentral;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 
 @Service
 public class RewardsService {
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
-
     private Logger logger = LoggerFactory.getLogger(RewardsService.class);
 
     // proximity in miles
     private int defaultProximityBuffer = 10;
     private int proximityBuffer = defaultProximityBuffer;
     private int attractionProximityRange = 200;
-    private final GpsUtil gpsUtil;
+    private final AttractionCatalog attractionCatalog;
     private final RewardCentral rewardsCentral;
+    private final ExecutorService rewardsExecutor;
+    private final UserJournal userJournal;
+    private final Timer calculateRewardsTimer;
+    // the catalog version in use with its ProximityGrid, replaced when the catalog or the proximityBuffer changes
+    private volatile RewardsState state;
 
     public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-        this.gpsUtil = gpsUtil;
+        this(new AttractionCatalog(gpsUtil::getAttractions), rewardCentral, TourGuideExecutors.defaultRewardsExecutor(),
+                UserJournal.disabled(), Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public RewardsService(AttractionCatalog attractionCatalog, RewardCentral rewardCentral,
+                          @Qualifier("rewardsExecutor") ExecutorService rewardsExecutor, UserJournal userJournal,
+                          MeterRegistry meterRegistry) {
+        this.attractionCatalog = attractionCatalog;
         this.rewardsCentral = rewardCentral;
+        this.rewardsExecutor = rewardsExecutor;
+        this.userJournal = userJournal;
+        this.calculateRewardsTimer = Timer.builder("tourguide.rewards.calculation")
+                .description("Time to calculate the rewards of a User")
+                .register(meterRegistry);
+        AttractionCatalog.Snapshot catalog = attractionCatalog.current();
+        this.state = new RewardsState(catalog, new ProximityGrid(catalog.getAttractions(), proximityBuffer), 0);
+    }
+
+    /**
+     * Get the attraction catalog used for rewards.
+     *
+     * @return the AttractionCatalog.
+     */
+    public AttractionCatalog getAttractionCatalog() {
+        return attractionCatalog;
     }
 
     /**
-     * Set the proximityBuffer.
+     * Set the proximityBuffer. The rewards of every User are computed again from their first VisitedLocation on
+     * their next calculateRewards.
      *
      * @param proximityBuffer the proximityBuffer to set.
      */
-    public void setProximityBuffer(int proximityBuffer) {
+    public synchronized void setProximityBuffer(int proximityBuffer) {
         this.proximityBuffer = proximityBuffer;
+        AttractionCatalog.Snapshot catalog = attractionCatalog.current();
+        this.state = new RewardsState(catalog, new ProximityGrid(catalog.getAttractions(), proximityBuffer),
+                state.version() + 1);
     }
 
     /**
      * Sets a default proximity as the proximityBuffer.
      */
     public void setDefaultProximityBuffer() {
-        proximityBuffer = defaultProximityBuffer;
+        setProximityBuffer(defaultProximityBuffer);
     }
 
     /**
      * Calculate the rewards for a User.
+     * Only the VisitedLocation added since the last calculation are evaluated, unless the proximityBuffer or the
+     * version of the AttractionCatalog changed.
+     * Each VisitedLocation is only compared with the Attraction of the nearby cells of the ProximityGrid, and the
+     * Attraction the User already has a reward for are skipped before any distance computation.
+     * RewardCentral is called without holding the lock of the User. Its duration, waiting for the User and for
+     * RewardCentral included, is timed as tourguide.rewards.calculation.
      *
      * @param user for whom to calculate reward.
      */
     public void calculateRewards(User user) {
-        CopyOnWriteArrayList<VisitedLocation> userLocations = new CopyOnWriteArrayList<>(user.getVisitedLocations());
-        CopyOnWriteArrayList<UserReward> userRewards = new CopyOnWriteArrayList<>(user.getUserRewards());
-        List<Attraction> attractions = gpsUtil.getAttractions();
-        List<UserReward> newRewardsTOAdd = new ArrayList<>();
-
-        for (VisitedLocation visitedLocation : userLocations) {
-            for (Attraction attraction : attractions) {
-                if (nearAttraction(visitedLocation, attraction) && userRewards.stream().noneMatch(r -> r.attraction.attractionName.equals(attraction.attractionName))) {
-                    UserReward userReward = new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user));
-                    userRewards.add(userReward);
-                    newRewardsTOAdd.add(userReward);
+        long startNanos = System.nanoTime();
+        try {
+            calculateNewRewards(user);
+        } finally {
+            calculateRewardsTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void calculateNewRewards(User user) {
+        RewardsState current = currentState();
+        int version = current.version();
+        ProximityGrid grid = current.grid();
+        DistanceEngine distanceEngine = current.catalog().getDistanceEngine();
+        List<Attraction> attractions = distanceEngine.getAttractions();
+
+        // the User is locked only to read its new locations and to record its rewards, never while RewardCentral is
+        // called, so that tracking and reading its locations do not wait for a calculation
+        List<RewardCandidate> candidates = new ArrayList<>();
+        int end;
+        synchronized (user) {
+            List<VisitedLocation> userLocations = user.getVisitedLocations();
+            end = userLocations.size();
+            int start = user.getRewardsVersion() == version ? Math.min(user.getRewardedLocationCount(), end) : 0;
+            Set<String> candidateNames = new HashSet<>();
+
+            for (int i = start; i < end; i++) {
+                VisitedLocation visitedLocation = userLocations.get(i);
+                grid.forEachCandidate(visitedLocation.location, ordinal -> {
+                    Attraction attraction = attractions.get(ordinal);
+                    if (!user.hasUserReward(attraction.attractionName)
+                            && !candidateNames.contains(attraction.attractionName)
+                            && distanceEngine.isWithin(ordinal, visitedLocation.location, grid.getRadiusMiles())) {
+                        candidateNames.add(attraction.attractionName);
+                        candidates.add(new RewardCandidate(visitedLocation, ordinal));
+                    }
+                });
+            }
+        }
+
+        int[] rewardPoints = new int[candidates.size()];
+        for (int i = 0; i < rewardPoints.length; i++) {
+            rewardPoints[i] = getRewardPoints(attractions.get(candidates.get(i).ordinal()), user);
+        }
+
+        synchronized (user) {
+            for (int i = 0; i < rewardPoints.length; i++) {
+                RewardCandidate candidate = candidates.get(i);
+                Attraction attraction = attractions.get(candidate.ordinal());
+                if (user.addUserReward(new UserReward(candidate.visitedLocation(), attraction, rewardPoints[i]))) {
+                    userJournal.appendReward(user.getUserId(), candidate.visitedLocation(), attraction.attractionName,
+                            rewardPoints[i]);
                 }
             }
+            // a concurrent calculation may have gone further, the watermark never goes back
+            if (version > user.getRewardsVersion()
+                    || (version == user.getRewardsVersion() && end > user.getRewardedLocationCount())) {
+                user.setRewardsWatermark(end, version);
+            }
         }
-        for (UserReward userReward : newRewardsTOAdd) user.addUserReward(userReward);
     }
 
     /**
      * For each User on the list use a CompletableFuture to calculateRewards to be more efficient.
-     * The thread pool is 50. Use only for testing highVolumeGetRewards.
+     * The tasks run on the shared rewards executor. Use only for testing highVolumeGetRewards.
      *
      * @param users is the list of User.
      */
     public void calculateRewardsForAllUsers(List<User> users) {
         List<CompletableFuture<Void>> futures = new ArrayList<>();
-        ExecutorService executorService = Executors.newFixedThreadPool(50);
         for (User user : users) {
             futures.add(CompletableFuture.runAsync(() -> {
                 calculateRewards(user);
-            }, executorService));
+            }, rewardsExecutor));
         }
         for (CompletableFuture<Void> future : futures) {
             try {
@@ -107,17 +199,6 @@ public class RewardsService {
         return !(getDistance(attraction, location) > attractionProximityRange);
     }
 
-    /**
-     * Find if the Attraction is near the position of the User, using proximityBuffer to determine the distance limit.
-     *
-     * @param visitedLocation last position of a User.
-     * @param attraction      the Attraction to search.
-     * @return true if the Attraction is near User.
-     */
-    private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-        return !(getDistance(attraction, visitedLocation.location) > proximityBuffer);
-    }
-
     /**
      * Get the number of reward points a User can get from an Attraction.
      *
@@ -129,6 +210,27 @@ public class RewardsService {
         return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
     }
 
+    /**
+     * Get the RewardsState of the current version of the AttractionCatalog, with a new ProximityGrid and the next
+     * rewards version when the catalog changed since the last calculation.
+     *
+     * @return the RewardsState.
+     */
+    private RewardsState currentState() {
+        RewardsState current = state;
+        AttractionCatalog.Snapshot catalog = attractionCatalog.current();
+        if (current.catalog() == catalog) {
+            return current;
+        }
+        synchronized (this) {
+            if (state.catalog() != catalog) {
+                state = new RewardsState(catalog, new ProximityGrid(catalog.getAttractions(), proximityBuffer),
+                        state.version() + 1);
+            }
+            return state;
+        }
+    }
+
     /**
      * Return a distance in Miles between two locations.
      *
@@ -137,17 +239,20 @@ public class RewardsService {
      * @return distance between loc1 and loc2.
      */
     public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
+        return DistanceEngine.distance(loc1, loc2);
+    }
 
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+    /**
+     * The catalog version the rewards are calculated with, its ProximityGrid for the proximityBuffer, and the rewards
+     * version: every User rewarded with an older version is fully recomputed on its next calculation.
+     */
+    private record RewardsState(AttractionCatalog.Snapshot catalog, ProximityGrid grid, int version) {
+    }
 
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        double statuteMiles = STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
-        return statuteMiles;
+    /**
+     * A VisitedLocation of a User close enough to the Attraction with the ordinal to be rewarded.
+     */
+    private record RewardCandidate(VisitedLocation visitedLocation, int ordinal) {
     }
 
 }
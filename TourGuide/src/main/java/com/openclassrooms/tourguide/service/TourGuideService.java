@@ -1,15 +1,30 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.DistanceEngine;
+import com.openclassrooms.tourguide.cache.CachedRewardCentral;
 import com.openclassrooms.tourguide.dto.AttractionDTO;
+import com.openclassrooms.tourguide.executor.BoundedFanOut;
+import com.openclassrooms.tourguide.executor.DeadlineFanOut;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
 import com.openclassrooms.tourguide.dto.NearbyAttractionsDTO;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.persistence.UserJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshot;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.repository.UserRepository;
+import com.openclassrooms.tourguide.tracker.LocationUpdatePublisher;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,42 +33,71 @@ import rewardCentral.RewardCentral;
 import tripPricer.Provider;
 import tripPricer.TripPricer;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
 public class TourGuideService {
+    private static final int NEARBY_ATTRACTIONS_COUNT = 5;
     private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
-    private final GpsUtil gpsUtil;
     private final RewardsService rewardsService;
-    private final TripPricer tripPricer = new TripPricer();
+    private final TripPricer tripPricer;
+    private final CachedRewardCentral rewardCentral;
+    private final TrackingPipeline trackingPipeline;
+    private final UserJournal userJournal;
+    private final UserSnapshot userSnapshot;
+    private final AttractionCatalog attractionCatalog;
+    private final BoundedFanOut batchFanOut;
+    private final DeadlineFanOut pointsFanOut;
     public final Tracker tracker;
     boolean testMode = true;
 
-    @Autowired
-    private RewardCentral rewardCentral;
-
     public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
-        this.gpsUtil = gpsUtil;
+        this(rewardsService, new TrackingPipeline(gpsUtil, rewardsService, UserJournal.disabled(),
+                LocationUpdatePublisher.disabled(), TourGuideExecutors.defaultTrackingExecutor(),
+                TourGuideExecutors.defaultTrackerRewardsExecutor(), TrackingPipeline.DEFAULT_REWARD_WORKERS,
+                TrackingPipeline.DEFAULT_QUEUE_CAPACITY),
+                new InMemoryUserRepository(), UserJournal.disabled(), UserSnapshot.disabled(), new TripPricer(),
+                Metrics.globalRegistry, new BoundedFanOut(TourGuideExecutors.defaultTrackingExecutor(),
+                BoundedFanOut.DEFAULT_PARALLELISM), new CachedRewardCentral(new RewardCentral(),
+                CachedRewardCentral.DEFAULT_MAXIMUM_SIZE, CachedRewardCentral.DEFAULT_EXPIRE_AFTER_WRITE,
+                TourGuideExecutors.defaultPrefetchExecutor(), Metrics.globalRegistry),
+                new DeadlineFanOut(TourGuideExecutors.defaultPointsExecutor(), DeadlineFanOut.DEFAULT_TIMEOUT_MILLIS));
+    }
+
+    @Autowired
+    public TourGuideService(RewardsService rewardsService, TrackingPipeline trackingPipeline,
+                            UserRepository userRepository, UserJournal userJournal, UserSnapshot userSnapshot,
+                            TripPricer tripPricer, MeterRegistry meterRegistry, BoundedFanOut batchFanOut,
+                            CachedRewardCentral rewardCentral, DeadlineFanOut pointsFanOut) {
         this.rewardsService = rewardsService;
+        this.tripPricer = tripPricer;
+        this.rewardCentral = rewardCentral;
+        this.batchFanOut = batchFanOut;
+        this.pointsFanOut = pointsFanOut;
+        this.trackingPipeline = trackingPipeline;
+        this.userRepository = userRepository;
+        this.userJournal = userJournal;
+        this.userSnapshot = userSnapshot;
+        this.attractionCatalog = rewardsService.getAttractionCatalog();
+        trackingPipeline.addRefreshListener(this::prefetchRewardPoints);
 
         Locale.setDefault(Locale.US);
 
-        if (testMode) {
+        List<User> restoredUsers = restoreUsers();
+        restoredUsers.forEach(userRepository::addUser);
+
+        if (testMode && restoredUsers.isEmpty()) {
             logger.info("TestMode enabled");
             logger.debug("Initializing users");
             initializeInternalUsers();
             logger.debug("Finished initializing users");
         }
 
-        tracker = new Tracker(this);
+        tracker = new Tracker(this, meterRegistry);
+        userSnapshot.start(userRepository::users);
         addShutDownHook();
     }
 
@@ -80,32 +124,59 @@ public class TourGuideService {
     }
 
     /**
-     * Get the User with userName from the internalUserMap.
+     * Get the User with userName from the UserRepository.
      *
      * @param userName of the User to get.
      * @return the User with userName.
      */
     public User getUser(String userName) {
-        return internalUserMap.get(userName);
+        return userRepository.getUser(userName);
     }
 
     /**
-     * Get a list of all the User from internalUserMap.
+     * Get the users of a batch: the users with the given names, or else all the users, and in both cases only those
+     * whose name starts with userNamePrefix if it is set. Unknown and repeated names are ignored.
+     *
+     * @param userNames      the names of the users, null to select all of them.
+     * @param userNamePrefix the prefix of the names, null for any name.
+     * @return the users, in the order of userNames.
+     */
+    public List<User> getUsers(Collection<String> userNames, String userNamePrefix) {
+        Stream<User> users = userNames == null ? userRepository.stream()
+                : new LinkedHashSet<>(userNames).stream().map(userRepository::getUser).filter(Objects::nonNull);
+        if (userNamePrefix != null) {
+            users = users.filter(user -> user.getUserName().startsWith(userNamePrefix));
+        }
+        return users.toList();
+    }
+
+    /**
+     * Get a list of all the User from the UserRepository. The list is a copy, use streamUsers to iterate.
      *
      * @return a list of all User.
      */
     public List<User> getAllUsers() {
-        return internalUserMap.values().stream().collect(Collectors.toList());
+        return userRepository.getAllUsers();
+    }
+
+    /**
+     * Get a weakly consistent stream of all the User of the UserRepository, without copying them.
+     *
+     * @return a stream of User.
+     */
+    public Stream<User> streamUsers() {
+        return userRepository.stream();
     }
 
     /**
-     * Add a User to the internalUserMap.
+     * Add a User to the UserRepository, and to the schedule of the Tracker.
      *
      * @param user to add.
      */
     public void addUser(User user) {
-        if (!internalUserMap.containsKey(user.getUserName())) {
-            internalUserMap.put(user.getUserName(), user);
+        if (userRepository.addUser(user)) {
+            journalUser(user);
+            tracker.addUser(user);
         }
     }
 
@@ -125,83 +196,88 @@ public class TourGuideService {
     }
 
     /**
-     * Update the data of a User and return the new VisitedLocation.
+     * Update the data of a User and return the new VisitedLocation, which is also published to the live location
+     * feed. The concurrent updates of the same User, from requests or from the Tracker, share one gpsUtil call and
+     * get the same VisitedLocation; their rewards calculations only evaluate the locations not yet evaluated.
      *
      * @param user to be updated.
      * @return the last visitedLocation.
      */
     public VisitedLocation trackUserLocation(User user) {
-        VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-        user.addToVisitedLocations(visitedLocation);
+        VisitedLocation visitedLocation = trackingPipeline.refreshLocation(user);
         rewardsService.calculateRewards(user);
         return visitedLocation;
     }
 
     /**
-     * Update data of a list of User. Each call of trackUserLocation is a CompletableFuture to be more efficient.
-     * The thread pool is 30.
+     * Update data of a list of User with the TrackingPipeline: the locations are fetched on the tracking executor
+     * and the rewards calculated by the reward workers of the pipeline.
      *
      * @param users a list of User.
+     * @return the statistics of both stages.
      */
-    public void trackUsersLocation(List<User> users) {
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-        ExecutorService executorService = Executors.newFixedThreadPool(30);
-        for (User user : users) {
-            futures.add(CompletableFuture.runAsync(() -> {
-                trackUserLocation(user);
-            }, executorService));
-        }
-        for (CompletableFuture<Void> future : futures) {
-            try {
-                future.get();
-            } catch (InterruptedException | ExecutionException e) {
-                logger.debug("Error : %s".formatted(e));
-                throw new RuntimeException(e);
-            }
-        }
+    public TrackingPipeline.Stats trackUsersLocation(List<User> users) {
+        return trackingPipeline.run(users);
     }
 
     /**
      * Get the closest five Attraction to the user no matter how far away.
+     * The AttractionIndex is built once per version of the AttractionCatalog, so no sort is done per call.
      *
      * @param visitedLocation for the Location of the User.
      * @return a List of Attraction.
      */
     public List<Attraction> getNearByAttractions(VisitedLocation visitedLocation) {
-        List<Attraction> nearbyAttractions = new ArrayList<>();
-        List<Attraction> attractions = gpsUtil.getAttractions();
-
-        attractions.sort((o1, o2) -> Double.compare(
-                Math.abs(rewardsService.getDistance(visitedLocation.location, new Location(o1.latitude, o1.longitude))),
-                Math.abs(rewardsService.getDistance(visitedLocation.location, new Location(o2.latitude, o2.longitude)))
-        ));
-
-        for (int i = 0; i < Math.min(5, attractions.size()); i++) {
-            nearbyAttractions.add(attractions.get(i));
-        }
-        return nearbyAttractions;
+        return attractionCatalog.current().getAttractionIndex()
+                .nearest(visitedLocation.location, NEARBY_ATTRACTIONS_COUNT);
     }
 
     /**
      * Get the closest five tourist attractions to the user - no matter how far away they are in a DTO object.
      * Contains user Location and a list of (Attraction name / Location / Distance from User and Reward Points)
-     * for each of the five Attractions.
+     * for each of the five Attractions. The reward points are cached, and usually prefetched when the User was
+     * tracked: the cached ones are read by the calling thread, only the missing ones are fetched in parallel by the
+     * points fan-out, and an Attraction whose points were not fetched before its deadline has
+     * AttractionDTO.UNKNOWN_REWARD points.
      *
      * @param visitedLocation for the Location of the User.
      * @return a DTO Object.
      */
     public NearbyAttractionsDTO getNearbyAttractionsDTO(VisitedLocation visitedLocation) {
-        List<Attraction> attractions = getNearByAttractions(visitedLocation);
+        AttractionCatalog.Snapshot catalog = attractionCatalog.current();
+        DistanceEngine distanceEngine = catalog.getDistanceEngine();
         List<AttractionDTO> attractionDTOS = new ArrayList<>();
         NearbyAttractionsDTO dto = new NearbyAttractionsDTO();
 
-        for (Attraction attraction : attractions) {
-            Location attLocation = new Location(attraction.latitude, attraction.longitude);
+        int[] ordinals = catalog.getAttractionIndex().nearestOrdinals(visitedLocation.location, NEARBY_ATTRACTIONS_COUNT);
+        List<Attraction> attractions = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            attractions.add(distanceEngine.getAttractions().get(ordinal));
+        }
+        // the cached points never wait behind the RewardCentral calls of the points executor
+        List<Integer> rewardPoints = new ArrayList<>(ordinals.length);
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < ordinals.length; i++) {
+            Integer cached = rewardCentral.getIfPresent(attractions.get(i).attractionId, visitedLocation.userId);
+            rewardPoints.add(cached);
+            if (cached == null) {
+                missing.add(i);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Integer> fetched = pointsFanOut.map(missing, i -> rewardCentral.loadAttractionRewardPoints(
+                    attractions.get(i).attractionId, visitedLocation.userId), AttractionDTO.UNKNOWN_REWARD);
+            for (int j = 0; j < missing.size(); j++) {
+                rewardPoints.set(missing.get(j), fetched.get(j));
+            }
+        }
+        for (int i = 0; i < ordinals.length; i++) {
+            Attraction attraction = attractions.get(i);
             attractionDTOS.add(new AttractionDTO(
                     attraction.attractionName,
-                    attLocation,
-                    rewardsService.getDistance(visitedLocation.location, attLocation),
-                    rewardCentral.getAttractionRewardPoints(visitedLocation.userId, attraction.attractionId))
+                    new Location(attraction.latitude, attraction.longitude),
+                    distanceEngine.distance(ordinals[i], visitedLocation.location),
+                    rewardPoints.get(i))
             );
         }
 
@@ -211,84 +287,125 @@ public class TourGuideService {
     }
 
     /**
-     * Stop the Tracker.
+     * Load in the background the reward points of the closest five attractions to a new location of a User, when they
+     * are not cached yet, so that its next getNearbyAttractionsDTO does not wait for RewardCentral.
+     *
+     * @param visitedLocation the new location of the User.
      */
-    private void addShutDownHook() {
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            public void run() {
-                tracker.stopTracking();
-            }
-        });
+    private void prefetchRewardPoints(VisitedLocation visitedLocation) {
+        AttractionCatalog.Snapshot catalog = attractionCatalog.current();
+        List<Attraction> attractions = catalog.getAttractions();
+        List<UUID> attractionIds = new ArrayList<>(NEARBY_ATTRACTIONS_COUNT);
+        int[] ordinals = catalog.getAttractionIndex().nearestOrdinals(visitedLocation.location, NEARBY_ATTRACTIONS_COUNT);
+        for (int ordinal : ordinals) {
+            attractionIds.add(attractions.get(ordinal).attractionId);
+        }
+        rewardCentral.prefetch(visitedLocation.userId, attractionIds);
     }
 
-    /**********************************************************************************
-     *
-     * Methods Below: For Internal Testing
-     *
-     **********************************************************************************/
-    private static final String tripPricerApiKey = "test-server-api-key";
-    // Database connection will be used for external users, but for testing purposes
-    // internal users are provided and stored in memory
-    private final Map<String, User> internalUserMap = new HashMap<>();
-
     /**
-     * Initialize internal users, populate the internalUserMap with a number of User.
+     * Get the last VisitedLocation of each User of a batch, as getUserLocation does for one User. The users without
+     * location are tracked in parallel, with at most the parallelism of the batch fan-out for the whole batch.
+     *
+     * @param users the users of the batch.
+     * @return the VisitedLocation by userName, in the order of the users.
      */
-    private void initializeInternalUsers() {
-        IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-            String userName = "internalUser" + i;
-            String phone = "000";
-            String email = userName + "@tourGuide.com";
-            User user = new User(UUID.randomUUID(), userName, phone, email);
-            generateUserLocationHistory(user);
-
-            internalUserMap.put(userName, user);
-        });
-        logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
+    public Map<String, VisitedLocation> getUserLocations(List<User> users) {
+        return byUserName(users, batchFanOut.map(users, this::getUserLocation));
     }
 
     /**
-     * Generate a multiple VisitedLocation and add it to the User.
+     * Get the NearbyAttractionsDTO of each User of a batch, as getNearbyAttractionsDTO does for one User. The users
+     * share the AttractionCatalog and are processed in parallel, at most the parallelism of the batch fan-out at a
+     * time; each of them fetches the reward points of its five attractions on the points executor, so a batch has up
+     * to five times that parallelism of RewardCentral calls in progress.
      *
-     * @param user to modify.
+     * @param users the users of the batch.
+     * @return the NearbyAttractionsDTO by userName, in the order of the users.
      */
-    private void generateUserLocationHistory(User user) {
-        IntStream.range(0, 3).forEach(i -> {
-            user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-                    new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
-        });
+    public Map<String, NearbyAttractionsDTO> getNearbyAttractionsDTOs(List<User> users) {
+        return byUserName(users, batchFanOut.map(users, user -> getNearbyAttractionsDTO(getUserLocation(user))));
+    }
+
+    private static <T> Map<String, T> byUserName(List<User> users, List<T> results) {
+        Map<String, T> byUserName = new LinkedHashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            byUserName.put(users.get(i).getUserName(), results.get(i));
+        }
+        return byUserName;
     }
 
     /**
-     * Get a random longitude.
+     * Get the users saved by a previous run: from the UserJournal, which holds every change, or else from the last
+     * UserSnapshot. The users restored from the snapshot are written to the journal, which is replayed on the next
+     * start.
      *
-     * @return a random longitude.
+     * @return the users, empty if none were saved.
      */
-    private double generateRandomLongitude() {
-        double leftLimit = -180;
-        double rightLimit = 180;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+    private List<User> restoreUsers() {
+        List<Attraction> attractions = attractionCatalog.current().getAttractions();
+        List<User> users = userJournal.replay(attractions);
+        if (users.isEmpty() && userSnapshot.exists()) {
+            long start = System.nanoTime();
+            try {
+                users = userSnapshot.read(attractions);
+                logger.info("Restored %d users from the snapshot in %d ms".formatted(users.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not restore the user snapshot: %s".formatted(e));
+            }
+            // the next start replays the journal instead of the snapshot, so it must hold the restored users
+            users.forEach(this::journalUser);
+        }
+        return users;
     }
 
     /**
-     * Get a random latitude.
+     * Append a User, its VisitedLocation and its UserReward to the UserJournal.
      *
-     * @return a random latitude.
+     * @param user the new or restored User.
      */
-    private double generateRandomLatitude() {
-        double leftLimit = -85.05112878;
-        double rightLimit = 85.05112878;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+    private void journalUser(User user) {
+        userJournal.appendUser(user);
+        user.getVisitedLocations().forEach(visitedLocation -> userJournal.appendLocation(user.getUserId(), visitedLocation));
+        for (UserReward userReward : user.getUserRewards()) {
+            userJournal.appendReward(user.getUserId(), userReward.visitedLocation, userReward.attraction.attractionName,
+                    userReward.getRewardPoints());
+        }
     }
 
     /**
-     * Get a random Date.
+     * Stop the Tracker.
+     */
+    private void addShutDownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                tracker.stopTracking();
+            }
+        });
+    }
+
+    /**********************************************************************************
+     *
+     * Methods Below: For Internal Testing
      *
-     * @return a random Date.
+     **********************************************************************************/
+    private static final String tripPricerApiKey = "test-server-api-key";
+    // Database connection will be used for external users, but for testing purposes
+    // internal users are provided and stored in memory
+    private final UserRepository userRepository;
+
+    /**
+     * Initialize internal users, populate the UserRepository with a number of User generated in parallel.
      */
-    private Date getRandomTime() {
-        LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-        return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+    private void initializeInternalUsers() {
+        InternalUserGenerator generator = new InternalUserGenerator(InternalTestHelper.getInternalUserSeed(),
+                InternalTestHelper.getInternalUserHistoryLength());
+        generator.generate(InternalTestHelper.getInternalUserNumber(), user -> {
+            userRepository.addUser(user);
+            journalUser(user);
+        });
+        logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
     }
 
 }
@@ -0,0 +1,102 @@
+package com.openclassrooms.tourguide.tracker;
+
+import gpsUtil.location.VisitedLocation;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publish each new VisitedLocation of the tracking to the subscribers of the live location feed.
+ * Each subscriber has its own buffer of bufferCapacity locations, delivered from the executor: publishing never waits,
+ * a location is dropped for a subscriber whose buffer is full, so a slow client only loses updates and never slows
+ * down the tracking. The executor must reject the tasks it cannot queue instead of running them in the publishing
+ * thread: a rejected location is dropped, and the subscriber whose delivery was rejected is closed by the
+ * SubmissionPublisher. Without subscribers, publishing costs a volatile read.
+ */
+public class LocationUpdatePublisher {
+    public static final int DEFAULT_BUFFER_CAPACITY = 1024;
+
+    private static final LocationUpdatePublisher DISABLED = new LocationUpdatePublisher(Runnable::run, 1);
+
+    static {
+        DISABLED.close();
+    }
+
+    private final SubmissionPublisher<VisitedLocation> publisher;
+    private final LongAdder dropped = new LongAdder();
+
+    public LocationUpdatePublisher(Executor executor, int bufferCapacity) {
+        this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+    }
+
+    /**
+     * Get a closed publisher, for the services created without a feed: nothing is published and the subscribers are
+     * completed at once.
+     *
+     * @return the disabled publisher.
+     */
+    public static LocationUpdatePublisher disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Publish a VisitedLocation to the current subscribers.
+     *
+     * @param visitedLocation the new location of a User.
+     */
+    public void publish(VisitedLocation visitedLocation) {
+        if (publisher.hasSubscribers()) {
+            try {
+                publisher.offer(visitedLocation, (subscriber, dropped) -> {
+                    this.dropped.increment();
+                    return false;
+                });
+            } catch (RejectedExecutionException e) {
+                // the queue of the executor is full: the location is not delivered to the remaining subscribers
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Add a subscriber, which receives the locations published from now on.
+     *
+     * @param subscriber the subscriber.
+     */
+    public void subscribe(Flow.Subscriber<VisitedLocation> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Get the number of current subscribers.
+     *
+     * @return the number of subscribers.
+     */
+    public int getSubscriberCount() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    /**
+     * Get the number of locations dropped because the buffer of a subscriber, or the queue of the executor, was full.
+     *
+     * @return the dropped locations, counted once per subscriber, or once for a full queue.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Complete all the subscribers once their buffered locations are delivered, as far as the executor accepts the
+     * tasks.
+     */
+    public void close() {
+        try {
+            publisher.close();
+        } catch (RejectedExecutionException e) {
+            // the queue of the executor is full: the subscribers not yet completed are closed without onComplete
+        }
+    }
+}
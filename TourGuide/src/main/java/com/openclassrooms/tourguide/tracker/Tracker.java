@@ -2,6 +2,10 @@ package com.openclassrooms.tourguide.tracker;
 
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,16 +18,61 @@ import java.util.concurrent.TimeUnit;
 public class Tracker extends Thread {
     private Logger logger = LoggerFactory.getLogger(Tracker.class);
     private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
+    private static final int trackingSlots = 60;
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
     private final TourGuideService tourGuideService;
+    private final TrackingSchedule trackingSchedule = new TrackingSchedule(trackingSlots);
+    private final Timer slotTimer;
+    private final Timer cycleTimer;
+    private final Counter failures;
     private boolean stop = false;
 
-    public Tracker(TourGuideService tourGuideService) {
+    /**
+     * Create and start the Tracker of the users of the TourGuideService. The tracking of each slot is timed as
+     * tourguide.tracker.slot, a whole pass over the slots of the schedule as tourguide.tracker.cycle, the users that
+     * could not be tracked are counted as tourguide.tracker.failures and the number of users in the schedule is the
+     * gauge tourguide.tracker.users.
+     *
+     * @param tourGuideService the service of the users to track.
+     * @param meterRegistry    the registry of the metrics.
+     */
+    public Tracker(TourGuideService tourGuideService, MeterRegistry meterRegistry) {
         this.tourGuideService = tourGuideService;
+        this.slotTimer = Timer.builder("tourguide.tracker.slot")
+                .description("Time to track the users of one slot of the tracking schedule")
+                .register(meterRegistry);
+        this.cycleTimer = Timer.builder("tourguide.tracker.cycle")
+                .description("Time of one pass of the Tracker over every slot of the tracking schedule")
+                .register(meterRegistry);
+        this.failures = Counter.builder("tourguide.tracker.failures")
+                .description("Users whose location or rewards could not be updated by the Tracker")
+                .register(meterRegistry);
+        Gauge.builder("tourguide.tracker.users", trackingSchedule, TrackingSchedule::size)
+                .description("Users in the tracking schedule")
+                .register(meterRegistry);
 
+        tourGuideService.streamUsers().forEach(trackingSchedule::register);
         executorService.submit(this);
     }
 
+    /**
+     * Add a User to the tracking schedule.
+     *
+     * @param user to track.
+     */
+    public void addUser(User user) {
+        trackingSchedule.register(user);
+    }
+
+    /**
+     * Get the tracking schedule.
+     *
+     * @return the TrackingSchedule.
+     */
+    public TrackingSchedule getTrackingSchedule() {
+        return trackingSchedule;
+    }
+
     /**
      * Assures to shut down the Tracker thread
      */
@@ -32,25 +81,48 @@ public class Tracker extends Thread {
         executorService.shutdownNow();
     }
 
+    /**
+     * Track one slot of the TrackingSchedule per tick, so that every User is tracked once per polling interval
+     * without tracking all of them at the same time.
+     */
     @Override
     public void run() {
         StopWatch stopWatch = new StopWatch();
+        long tickNanos = TimeUnit.SECONDS.toNanos(trackingPollingInterval) / trackingSlots;
+        long nextTick = System.nanoTime();
+        long cycleStart = nextTick;
+        int slot = 0;
         while (true) {
             if (Thread.currentThread().isInterrupted() || stop) {
                 logger.debug("Tracker stopping");
                 break;
             }
 
-            List<User> users = tourGuideService.getAllUsers();
-            logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-            stopWatch.start();
-            tourGuideService.trackUsersLocation(users);
-            stopWatch.stop();
-            logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-            stopWatch.reset();
+            List<User> users = trackingSchedule.getUsers(slot);
+            if (!users.isEmpty()) {
+                logger.debug("Begin Tracker slot " + slot + ". Tracking " + users.size() + " users.");
+                stopWatch.start();
+                TrackingPipeline.Stats stats = tourGuideService.trackUsersLocation(users);
+                stopWatch.stop();
+                slotTimer.record(stopWatch.getNanoTime(), TimeUnit.NANOSECONDS);
+                failures.increment(stats.getFailed());
+                logger.debug("Tracker slot " + slot + " Time Elapsed: " + stopWatch.getTime() + " ms. " + stats);
+                stopWatch.reset();
+            }
+            slot = (slot + 1) % trackingSlots;
+            if (slot == 0) {
+                long now = System.nanoTime();
+                cycleTimer.record(now - cycleStart, TimeUnit.NANOSECONDS);
+                cycleStart = now;
+            }
+            nextTick += tickNanos;
             try {
-                logger.debug("Tracker sleeping");
-                TimeUnit.SECONDS.sleep(trackingPollingInterval);
+                long sleepNanos = nextTick - System.nanoTime();
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } else {
+                    logger.debug("Tracker behind schedule by " + TimeUnit.NANOSECONDS.toMillis(-sleepNanos) + " ms");
+                }
             } catch (InterruptedException e) {
                 break;
             }
@@ -0,0 +1,302 @@
+package com.openclassrooms.tourguide.tracker;
+
+import com.openclassrooms.tourguide.executor.SingleFlight;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.persistence.UserJournal;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Track a batch of users in two stages.
+ * The fetch stage calls gpsUtil on the tracking executor, which is sized for many waiting calls, and puts each
+ * updated User in a queue. The reward stage is a number of workers that drain the queue and calculate the rewards;
+ * as they wait on RewardCentral, they are as many as the threads of the rewards executor. The workers of a run are
+ * tasks of the reward executor, which must have at least rewardWorkers threads. A User takes one of queueCapacity
+ * permits before its fetch is submitted and gives it back once its rewards are calculated or its tracking failed,
+ * whatever was thrown: when the reward stage falls behind, the submission of new fetches waits, so the users in
+ * flight between the two stages stay bounded and the fetch threads themselves never block on the queue.
+ * The locations are refreshed by refreshLocation, which is also used outside of the pipeline: the concurrent refreshes
+ * of the same User share one gpsUtil call.
+ */
+public class TrackingPipeline {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_REWARD_WORKERS = TourGuideExecutors.DEFAULT_REWARDS_POOL_SIZE;
+
+    private Logger logger = LoggerFactory.getLogger(TrackingPipeline.class);
+    private static final long POLL_MILLIS = 50;
+
+    private final GpsUtil gpsUtil;
+    private final RewardsService rewardsService;
+    private final UserJournal userJournal;
+    private final LocationUpdatePublisher locationUpdatePublisher;
+    private final ExecutorService fetchExecutor;
+    private final ExecutorService rewardExecutor;
+    private final int rewardWorkers;
+    private final int queueCapacity;
+    private final LongAdder queueDepth = new LongAdder();
+    private final LongAdder pendingUsers = new LongAdder();
+    private final SingleFlight<UUID, VisitedLocation> locationRefreshes = new SingleFlight<>();
+    private final List<Consumer<VisitedLocation>> refreshListeners = new CopyOnWriteArrayList<>();
+
+    public TrackingPipeline(GpsUtil gpsUtil, RewardsService rewardsService, UserJournal userJournal,
+                            LocationUpdatePublisher locationUpdatePublisher, ExecutorService fetchExecutor,
+                            ExecutorService rewardExecutor, int rewardWorkers, int queueCapacity) {
+        this.gpsUtil = gpsUtil;
+        this.rewardsService = rewardsService;
+        this.userJournal = userJournal;
+        this.locationUpdatePublisher = locationUpdatePublisher;
+        this.fetchExecutor = fetchExecutor;
+        this.rewardExecutor = rewardExecutor;
+        this.rewardWorkers = rewardWorkers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Get the number of users waiting between the fetch and the reward stage, for all the runs in progress.
+     *
+     * @return the queue depth.
+     */
+    public long getQueueDepth() {
+        return queueDepth.sum();
+    }
+
+    /**
+     * Get the number of users given to the runs in progress and not yet tracked, in either stage or waiting for
+     * their fetch.
+     *
+     * @return the pending users.
+     */
+    public long getPendingUsers() {
+        return pendingUsers.sum();
+    }
+
+    /**
+     * Get the number of location refreshes that shared the gpsUtil call of a concurrent refresh of the same User.
+     *
+     * @return the coalesced refreshes.
+     */
+    public long getCoalescedRefreshes() {
+        return locationRefreshes.getCoalesced();
+    }
+
+    /**
+     * Add a listener called with each new VisitedLocation of refreshLocation, from the refreshing thread. It must
+     * not block.
+     *
+     * @param listener the listener.
+     */
+    public void addRefreshListener(Consumer<VisitedLocation> listener) {
+        refreshListeners.add(listener);
+    }
+
+    /**
+     * Get a new VisitedLocation from gpsUtil and add it to the User, to the UserJournal and to the live location feed.
+     * A refresh of a User already being refreshed, by the pipeline or by a request, waits for that refresh and returns
+     * its VisitedLocation instead of calling gpsUtil again.
+     *
+     * @param user the User to refresh.
+     * @return the new VisitedLocation.
+     */
+    public VisitedLocation refreshLocation(User user) {
+        return locationRefreshes.run(user.getUserId(), () -> {
+            VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
+            user.addToVisitedLocations(visitedLocation);
+            userJournal.appendLocation(user.getUserId(), visitedLocation);
+            locationUpdatePublisher.publish(visitedLocation);
+            refreshListeners.forEach(listener -> listener.accept(visitedLocation));
+            return visitedLocation;
+        });
+    }
+
+    /**
+     * Get a new VisitedLocation for each User and calculate their rewards, and wait for the end of both stages.
+     *
+     * @param users the users to track.
+     * @return the statistics of the run.
+     */
+    public Stats run(Collection<User> users) {
+        Stats stats = new Stats(users.size());
+        if (users.isEmpty()) {
+            return stats;
+        }
+        BlockingQueue<User> queue = new LinkedBlockingQueue<>();
+        Semaphore permits = new Semaphore(queueCapacity);
+        AtomicInteger remaining = new AtomicInteger(users.size());
+        pendingUsers.add(users.size());
+
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(rewardWorkers, users.size()); i++) {
+            workers.add(CompletableFuture.runAsync(() -> drain(queue, permits, remaining, stats), rewardExecutor));
+        }
+        int submitted = 0;
+        try {
+            for (User user : users) {
+                permits.acquire();
+                fetchExecutor.execute(() -> fetch(user, queue, permits, remaining, stats));
+                submitted++;
+            }
+        } catch (InterruptedException e) {
+            // the workers stop once the users already submitted are done
+            remaining.addAndGet(submitted - users.size());
+            pendingUsers.add(submitted - users.size());
+            Thread.currentThread().interrupt();
+            return stats;
+        }
+        // a worker ended by an Error is logged, the others finish the run
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).exceptionally(e -> {
+            logger.error("A reward worker stopped", e);
+            return null;
+        }).join();
+        return stats;
+    }
+
+    private void fetch(User user, BlockingQueue<User> queue, Semaphore permits, AtomicInteger remaining, Stats stats) {
+        long start = System.nanoTime();
+        boolean queued = false;
+        try {
+            refreshLocation(user);
+            stats.fetch.record(start);
+            queue.add(user);
+            queued = true;
+            queueDepth.increment();
+            stats.maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        } catch (RuntimeException e) {
+            logger.debug("Error tracking %s : %s".formatted(user.getUserName(), e));
+        } finally {
+            // an Error fails the User too, so that its permit is given back and the run still ends
+            if (!queued) {
+                stats.failed.increment();
+                release(permits, remaining);
+            }
+        }
+    }
+
+    private void drain(BlockingQueue<User> queue, Semaphore permits, AtomicInteger remaining, Stats stats) {
+        try {
+            while (remaining.get() > 0) {
+                User user = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (user == null) {
+                    continue;
+                }
+                queueDepth.decrement();
+                long start = System.nanoTime();
+                boolean rewarded = false;
+                try {
+                    rewardsService.calculateRewards(user);
+                    stats.reward.record(start);
+                    rewarded = true;
+                } catch (RuntimeException e) {
+                    logger.debug("Error : %s".formatted(e));
+                } finally {
+                    if (!rewarded) {
+                        stats.failed.increment();
+                    }
+                    release(permits, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void release(Semaphore permits, AtomicInteger remaining) {
+        permits.release();
+        pendingUsers.decrement();
+        remaining.decrementAndGet();
+    }
+
+    /**
+     * Counters of one run of the pipeline.
+     */
+    public static class Stats {
+        private final int users;
+        private final StageStats fetch = new StageStats();
+        private final StageStats reward = new StageStats();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        Stats(int users) {
+            this.users = users;
+        }
+
+        public int getUsers() {
+            return users;
+        }
+
+        public StageStats getFetch() {
+            return fetch;
+        }
+
+        public StageStats getReward() {
+            return reward;
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth.get();
+        }
+
+        @Override
+        public String toString() {
+            return "%d users, fetch stage %s, reward stage %s, %d failed, max queue depth %d"
+                    .formatted(users, fetch, reward, getFailed(), getMaxQueueDepth());
+        }
+    }
+
+    /**
+     * Number of users processed by a stage, and the time between its first start and its last end.
+     */
+    public static class StageStats {
+        private final LongAdder processed = new LongAdder();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+        void record(long startNanos) {
+            processed.increment();
+            firstStart.accumulateAndGet(startNanos, Math::min);
+            lastEnd.accumulateAndGet(System.nanoTime(), Math::max);
+        }
+
+        public long getProcessed() {
+            return processed.sum();
+        }
+
+        public double getElapsedSeconds() {
+            long end = lastEnd.get();
+            return end == Long.MIN_VALUE ? 0 : (end - firstStart.get()) / 1e9;
+        }
+
+        public double getThroughput() {
+            double seconds = getElapsedSeconds();
+            return seconds == 0 ? 0 : getProcessed() / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return "%d users in %.1f s (%.0f users/s)".formatted(getProcessed(), getElapsedSeconds(), getThroughput());
+        }
+    }
+}
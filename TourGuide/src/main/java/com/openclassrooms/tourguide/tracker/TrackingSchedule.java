@@ -0,0 +1,110 @@
+package com.openclassrooms.tourguide.tracker;
+
+import com.openclassrooms.tourguide.user.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashed timing wheel of the Tracker: the polling interval is split in slots and each User belongs to one slot,
+ * so it is tracked once per turn of the wheel while the load is spread over the whole interval.
+ * A User goes to the slot given by the hash of its userId, unless that slot already holds more than its share of
+ * users, in which case it goes to the least loaded slot. Users never move once placed, so none is skipped or tracked
+ * twice within an interval.
+ */
+public class TrackingSchedule {
+    // a slot may hold this many users above the average before new users are sent elsewhere
+    private static final int MAX_IMBALANCE = 1;
+
+    private final List<Set<User>> slots = new ArrayList<>();
+    private final Map<UUID, Integer> slotByUserId = new ConcurrentHashMap<>();
+
+    public TrackingSchedule(int slotCount) {
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Get the number of slots of the wheel.
+     *
+     * @return the number of slots.
+     */
+    public int getSlotCount() {
+        return slots.size();
+    }
+
+    /**
+     * Get the number of users in the schedule.
+     *
+     * @return the number of users.
+     */
+    public int size() {
+        return slotByUserId.size();
+    }
+
+    /**
+     * Add a User to the schedule, if not already there.
+     *
+     * @param user to add.
+     * @return the slot of the User.
+     */
+    public synchronized int register(User user) {
+        Integer current = slotByUserId.get(user.getUserId());
+        if (current != null) {
+            return current;
+        }
+        int slot = Math.floorMod(spread(user.getUserId().hashCode()), slots.size());
+        int maxLoad = slotByUserId.size() / slots.size() + MAX_IMBALANCE;
+        if (slots.get(slot).size() >= maxLoad) {
+            slot = leastLoadedSlot();
+        }
+        slots.get(slot).add(user);
+        slotByUserId.put(user.getUserId(), slot);
+        return slot;
+    }
+
+    /**
+     * Get the users of a slot.
+     *
+     * @param slot the slot.
+     * @return a copy of the users of the slot.
+     */
+    public List<User> getUsers(int slot) {
+        return new ArrayList<>(slots.get(slot));
+    }
+
+    /**
+     * Get the number of users of a slot.
+     *
+     * @param slot the slot.
+     * @return the number of users.
+     */
+    public int getLoad(int slot) {
+        return slots.get(slot).size();
+    }
+
+    private int leastLoadedSlot() {
+        int best = 0;
+        for (int i = 1; i < slots.size(); i++) {
+            if (slots.get(i).size() < slots.get(best).size()) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Mix the high bits of the hash into the low bits before taking the modulus.
+     */
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
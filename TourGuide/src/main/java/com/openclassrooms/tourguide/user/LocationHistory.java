@@ -0,0 +1,212 @@
+package com.openclassrooms.tourguide.user;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * The VisitedLocation of one User, stored in columns of primitives: latitude, longitude and the time in epoch
+ * milliseconds. The userId is the one of the User and is not repeated, so a location costs 24 bytes instead of the
+ * VisitedLocation, Location and Date objects.
+ * The columns grow by chunks of at least CHUNK_SIZE locations. The VisitedLocation are created again on each read.
+ */
+public class LocationHistory {
+    // time of a VisitedLocation without timeVisited
+    public static final long NO_TIME = Long.MIN_VALUE;
+    private static final int CHUNK_SIZE = 4;
+    private static final double[] NO_COORDINATES = new double[0];
+    private static final long[] NO_TIMES = new long[0];
+
+    private final UUID userId;
+    private final List<VisitedLocation> view = new VisitedLocationList();
+    private double[] latitudes = NO_COORDINATES;
+    private double[] longitudes = NO_COORDINATES;
+    private long[] times = NO_TIMES;
+    private int size;
+
+    public LocationHistory(UUID userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Add a VisitedLocation at the end of the history.
+     *
+     * @param visitedLocation to add.
+     */
+    public synchronized void add(VisitedLocation visitedLocation) {
+        add(visitedLocation.location.latitude, visitedLocation.location.longitude,
+                visitedLocation.timeVisited == null ? NO_TIME : visitedLocation.timeVisited.getTime());
+    }
+
+    /**
+     * Add a location at the end of the history.
+     *
+     * @param latitude  of the location.
+     * @param longitude of the location.
+     * @param time      of the visit, in epoch milliseconds.
+     */
+    public synchronized void add(double latitude, double longitude, long time) {
+        if (size == times.length) {
+            grow();
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        times[size] = time;
+        size++;
+    }
+
+    /**
+     * Get the number of locations.
+     *
+     * @return the size of the history.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get a VisitedLocation of the history.
+     *
+     * @param index of the location, 0 being the oldest.
+     * @return a new VisitedLocation.
+     */
+    public synchronized VisitedLocation get(int index) {
+        checkIndex(index);
+        long time = times[index];
+        return new VisitedLocation(userId, new Location(latitudes[index], longitudes[index]),
+                time == NO_TIME ? null : new Date(time));
+    }
+
+    /**
+     * Get the latitude of a location of the history.
+     *
+     * @param index of the location.
+     * @return its latitude.
+     */
+    public synchronized double getLatitude(int index) {
+        checkIndex(index);
+        return latitudes[index];
+    }
+
+    /**
+     * Get the longitude of a location of the history.
+     *
+     * @param index of the location.
+     * @return its longitude.
+     */
+    public synchronized double getLongitude(int index) {
+        checkIndex(index);
+        return longitudes[index];
+    }
+
+    /**
+     * Get the time of a location of the history.
+     *
+     * @param index of the location.
+     * @return its time in epoch milliseconds, or NO_TIME.
+     */
+    public synchronized long getTime(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    /**
+     * Add all the locations of another history at the end of this one.
+     *
+     * @param other the history to copy.
+     */
+    public void addAll(LocationHistory other) {
+        synchronized (other) {
+            synchronized (this) {
+                int count = other.size;
+                for (int i = 0; i < count; i++) {
+                    add(other.latitudes[i], other.longitudes[i], other.times[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a copy of the history, to read it while locations are added to this one.
+     *
+     * @return a new LocationHistory with the same locations.
+     */
+    public synchronized LocationHistory copy() {
+        LocationHistory copy = new LocationHistory(userId);
+        copy.latitudes = Arrays.copyOf(latitudes, size);
+        copy.longitudes = Arrays.copyOf(longitudes, size);
+        copy.times = Arrays.copyOf(times, size);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Get the last VisitedLocation of the history.
+     *
+     * @return a new VisitedLocation.
+     */
+    public synchronized VisitedLocation getLast() {
+        return get(size - 1);
+    }
+
+    /**
+     * Get the last VisitedLocation of the history, if there is one.
+     *
+     * @return a new VisitedLocation, or null if the history is empty.
+     */
+    public synchronized VisitedLocation peekLast() {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    /**
+     * Remove all the locations and release the columns.
+     */
+    public synchronized void clear() {
+        latitudes = NO_COORDINATES;
+        longitudes = NO_COORDINATES;
+        times = NO_TIMES;
+        size = 0;
+    }
+
+    /**
+     * Get a read-only List view of the history. It never throws ConcurrentModificationException: an iteration sees
+     * the locations added before it reaches the end of the list.
+     *
+     * @return the view.
+     */
+    public List<VisitedLocation> asList() {
+        return view;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+
+    private void grow() {
+        int capacity = times.length + Math.max(CHUNK_SIZE, times.length >> 1);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        times = Arrays.copyOf(times, capacity);
+    }
+
+    private class VisitedLocationList extends AbstractList<VisitedLocation> implements RandomAccess {
+
+        @Override
+        public VisitedLocation get(int index) {
+            return LocationHistory.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return LocationHistory.this.size();
+        }
+    }
+}
@@ -6,7 +6,10 @@ import tripPricer.Provider;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class User {
     private final UUID userId;
@@ -14,16 +17,22 @@ public class User {
     private String phoneNumber;
     private String emailAddress;
     private Date latestLocationTimestamp;
-    private List<VisitedLocation> visitedLocations = new ArrayList<>();
-    private List<UserReward> userRewards = new ArrayList<>();
+    private final LocationHistory visitedLocations;
+    private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+    // names of the rewarded attractions, kept in sync with userRewards: the attractionId is regenerated by gpsUtil
+    private final Set<String> rewardedAttractionNames = ConcurrentHashMap.newKeySet();
     private UserPreferences userPreferences = new UserPreferences();
     private List<Provider> tripDeals = new ArrayList<>();
+    // number of visitedLocations already processed by the RewardsService, and the rewards version they were processed with
+    private int rewardedLocationCount;
+    private int rewardsVersion;
 
     public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
         this.userId = userId;
         this.userName = userName;
         this.phoneNumber = phoneNumber;
         this.emailAddress = emailAddress;
+        this.visitedLocations = new LocationHistory(userId);
     }
 
     public UUID getUserId() {
@@ -58,22 +67,33 @@ public class User {
         return latestLocationTimestamp;
     }
 
-    public void addToVisitedLocations(VisitedLocation visitedLocation) {
+    public synchronized void addToVisitedLocations(VisitedLocation visitedLocation) {
         visitedLocations.add(visitedLocation);
     }
 
     public List<VisitedLocation> getVisitedLocations() {
+        return visitedLocations.asList();
+    }
+
+    public LocationHistory getLocationHistory() {
         return visitedLocations;
     }
 
-    public void clearVisitedLocations() {
+    public synchronized void clearVisitedLocations() {
         visitedLocations.clear();
+        rewardedLocationCount = 0;
     }
 
-    public void addUserReward(UserReward userReward) {
-        if (userRewards.stream().noneMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName))) {
+    public boolean addUserReward(UserReward userReward) {
+        if (rewardedAttractionNames.add(userReward.attraction.attractionName)) {
             userRewards.add(userReward);
+            return true;
         }
+        return false;
+    }
+
+    public boolean hasUserReward(String attractionName) {
+        return rewardedAttractionNames.contains(attractionName);
     }
 
     public List<UserReward> getUserRewards() {
@@ -88,8 +108,21 @@ public class User {
         this.userPreferences = userPreferences;
     }
 
-    public VisitedLocation getLastVisitedLocation() {
-        return visitedLocations.get(visitedLocations.size() - 1);
+    public synchronized VisitedLocation getLastVisitedLocation() {
+        return visitedLocations.getLast();
+    }
+
+    public int getRewardedLocationCount() {
+        return rewardedLocationCount;
+    }
+
+    public int getRewardsVersion() {
+        return rewardsVersion;
+    }
+
+    public void setRewardsWatermark(int rewardedLocationCount, int rewardsVersion) {
+        this.rewardedLocationCount = rewardedLocationCount;
+        this.rewardsVersion = rewardsVersion;
     }
 
     public void setTripDeals(List<Provider> tripDeals) {
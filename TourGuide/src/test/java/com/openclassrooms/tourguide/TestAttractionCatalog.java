@@ -0,0 +1,89 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.persistence.UserJournal;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestAttractionCatalog {
+    private final AtomicReference<List<double[]>> places = new AtomicReference<>(List.of(
+            new double[]{33.817595, -117.922008}, new double[]{43.582767, -110.821999}, new double[]{35.985512, -92.757652}));
+
+    // like gpsUtil, every call returns new Attraction with new attractionId
+    private List<Attraction> load() {
+        List<Attraction> attractions = new ArrayList<>();
+        List<double[]> current = places.get();
+        for (int i = 0; i < current.size(); i++) {
+            attractions.add(new Attraction("Attraction " + i, "City", "State", current.get(i)[0], current.get(i)[1]));
+        }
+        return attractions;
+    }
+
+    @Test
+    public void unchangedAttractionsKeepTheVersion() {
+        AttractionCatalog catalog = new AttractionCatalog(this::load);
+        AttractionCatalog.Snapshot snapshot = catalog.current();
+
+        assertFalse(catalog.refresh());
+
+        assertSame(snapshot, catalog.current());
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(1, snapshot.ordinalOf("Attraction 1"));
+        assertEquals(-1, snapshot.ordinalOf("Unknown"));
+    }
+
+    @Test
+    public void changedAttractionsPublishANewVersion() {
+        AttractionCatalog catalog = new AttractionCatalog(this::load);
+        AttractionCatalog.Snapshot snapshot = catalog.current();
+        places.set(List.of(places.get().get(0), places.get().get(1), new double[]{0, 0}));
+
+        assertTrue(catalog.refresh());
+
+        AttractionCatalog.Snapshot refreshed = catalog.current();
+        assertEquals(2, refreshed.getVersion());
+        assertSame(snapshot.getAttractions().get(0), refreshed.getAttractions().get(0));
+        assertSame(snapshot.getAttractions().get(1), refreshed.getAttractions().get(1));
+        assertNotSame(snapshot.getAttractions().get(2), refreshed.getAttractions().get(2));
+        assertEquals(0, refreshed.getAttractionIndex().nearestOrdinals(snapshot.getAttractions().get(0), 1)[0]);
+        // the previous version is still whole for the readers holding it
+        assertEquals(35.985512, snapshot.getAttractions().get(2).latitude);
+    }
+
+    @Test
+    public void rewardsUseTheNewVersion() {
+        AttractionCatalog catalog = new AttractionCatalog(this::load);
+        RewardsService rewardsService = new RewardsService(catalog, new RewardCentral(),
+                TourGuideExecutors.defaultRewardsExecutor(), UserJournal.disabled(), new SimpleMeterRegistry());
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(0, 0), new Date()));
+        rewardsService.calculateRewards(user);
+        assertTrue(user.getUserRewards().isEmpty());
+
+        places.set(List.of(places.get().get(0), places.get().get(1), new double[]{0, 0}));
+        catalog.refresh();
+        rewardsService.calculateRewards(user);
+
+        assertEquals(1, user.getUserRewards().size());
+        assertEquals("Attraction 2", user.getUserRewards().get(0).attraction.attractionName);
+    }
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.DistanceEngine;
+import com.openclassrooms.tourguide.service.RewardsService;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestAttractionIndex {
+
+    private final RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+
+    @Test
+    public void nearestMatchesFullSort() {
+        Random random = new Random(42);
+        List<Attraction> attractions = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            attractions.add(new Attraction("attraction" + i, "city", "state",
+                    random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        AttractionIndex attractionIndex = new AttractionIndex(new DistanceEngine(attractions));
+
+        List<Location> queries = new ArrayList<>(List.of(new Location(89.9, 0), new Location(-89.9, 45),
+                new Location(0, 179.99), new Location(0, -179.99)));
+        for (int i = 0; i < 100; i++) {
+            queries.add(new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+
+        for (Location query : queries) {
+            double[] distances = attractions.stream().mapToDouble(a -> rewardsService.getDistance(query, a)).toArray();
+            List<Attraction> expected = IntStream.range(0, attractions.size()).boxed()
+                    .sorted(Comparator.comparingDouble(i -> distances[i]))
+                    .limit(5)
+                    .map(attractions::get)
+                    .toList();
+            List<Attraction> nearest = attractionIndex.nearest(query, 5);
+
+            assertEquals(5, nearest.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(rewardsService.getDistance(query, expected.get(i)),
+                        rewardsService.getDistance(query, nearest.get(i)), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void nearestOnSmallCatalog() {
+        List<Attraction> attractions = new GpsUtil().getAttractions();
+        AttractionIndex attractionIndex = new AttractionIndex(new DistanceEngine(attractions));
+
+        assertEquals(attractions.size(), attractionIndex.nearest(new Location(10, 10), 1000).size());
+        assertTrue(attractionIndex.nearest(new Location(10, 10), 0).isEmpty());
+        assertEquals(attractions.get(0).attractionName, attractionIndex.nearest(attractions.get(0), 1).get(0).attractionName);
+    }
+}
@@ -0,0 +1,58 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.executor.BoundedFanOut;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestBoundedFanOut {
+    private final ExecutorService executor = TourGuideExecutors.newBoundedPool("test-batch", 20, 1000);
+
+    @Test
+    public void resultsInOrderWithBoundedParallelism() {
+        BoundedFanOut fanOut = new BoundedFanOut(executor, 4);
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxInProgress = new AtomicInteger();
+
+        List<Integer> results = fanOut.map(IntStream.range(0, 100).boxed().toList(), i -> {
+            maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inProgress.decrementAndGet();
+            return i * 2;
+        });
+
+        assertEquals(IntStream.range(0, 100).map(i -> i * 2).boxed().toList(), results);
+        assertTrue(maxInProgress.get() <= 4);
+    }
+
+    @Test
+    public void stopsOnFailure() {
+        BoundedFanOut fanOut = new BoundedFanOut(executor, 1);
+        AtomicInteger calls = new AtomicInteger();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> fanOut.map(IntStream.range(0, 100).boxed().toList(), i -> {
+                    calls.incrementAndGet();
+                    if (i == 10) {
+                        throw new IllegalStateException("failed " + i);
+                    }
+                    return i;
+                }));
+
+        assertEquals("failed 10", e.getMessage());
+        assertEquals(11, calls.get());
+    }
+}
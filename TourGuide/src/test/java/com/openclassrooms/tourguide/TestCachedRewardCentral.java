@@ -0,0 +1,87 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.cache.CachedRewardCentral;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCachedRewardCentral {
+    private final Map<List<UUID>, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final RewardCentral countingRewardCentral = new RewardCentral() {
+        @Override
+        public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+            calls.computeIfAbsent(List.of(attractionId, userId), key -> new AtomicInteger()).incrementAndGet();
+            return Math.floorMod(attractionId.hashCode() ^ userId.hashCode(), 1000);
+        }
+    };
+
+    @Test
+    public void repeatedPointsAreCached() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CachedRewardCentral rewardCentral = new CachedRewardCentral(countingRewardCentral, 100, Duration.ofMinutes(1),
+                Runnable::run, meterRegistry);
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        int points = rewardCentral.getAttractionRewardPoints(attractionId, userId);
+        assertEquals(points, rewardCentral.getAttractionRewardPoints(attractionId, userId));
+        rewardCentral.getAttractionRewardPoints(userId, attractionId);
+
+        assertEquals(1, calls.get(List.of(attractionId, userId)).get());
+        assertEquals(1, calls.get(List.of(userId, attractionId)).get());
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "rewardPoints", "result", "hit").functionCounter().count());
+        assertEquals(2, meterRegistry.get("cache.gets").tags("cache", "rewardPoints", "result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void getIfPresentNeverCallsRewardCentral() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CachedRewardCentral rewardCentral = new CachedRewardCentral(countingRewardCentral, 100, Duration.ofMinutes(1),
+                Runnable::run, meterRegistry);
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        assertNull(rewardCentral.getIfPresent(attractionId, userId));
+        assertTrue(calls.isEmpty());
+        int points = rewardCentral.loadAttractionRewardPoints(attractionId, userId);
+        assertEquals(points, rewardCentral.getIfPresent(attractionId, userId));
+
+        assertEquals(1, calls.get(List.of(attractionId, userId)).get());
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "rewardPoints", "result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "rewardPoints", "result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void prefetchLoadsMissingPoints() throws InterruptedException {
+        CachedRewardCentral rewardCentral = new CachedRewardCentral(countingRewardCentral, 100, Duration.ofMinutes(1),
+                TourGuideExecutors.defaultPrefetchExecutor(), new SimpleMeterRegistry());
+        UUID userId = UUID.randomUUID();
+        List<UUID> attractionIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        rewardCentral.getAttractionRewardPoints(attractionIds.get(0), userId);
+
+        rewardCentral.prefetch(userId, attractionIds);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rewardCentral.size() < 3 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        attractionIds.forEach(attractionId -> rewardCentral.getAttractionRewardPoints(attractionId, userId));
+
+        assertEquals(3, rewardCentral.size());
+        attractionIds.forEach(attractionId -> assertEquals(1, calls.get(List.of(attractionId, userId)).get()));
+        assertEquals(3, calls.size());
+    }
+}
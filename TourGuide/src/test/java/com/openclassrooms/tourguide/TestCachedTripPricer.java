@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.cache.CachedTripPricer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TestCachedTripPricer {
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final TripPricer countingTripPricer = new TripPricer() {
+        @Override
+        public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                       int rewardsPoints) {
+            calls.incrementAndGet();
+            return List.of(new Provider(attractionId, "Provider " + calls.get(), 100.0 * adults - rewardsPoints));
+        }
+    };
+
+    @Test
+    public void dealsAreCachedByPreferencesAndPoints() {
+        CachedTripPricer tripPricer = new CachedTripPricer(countingTripPricer, 100, Duration.ofMinutes(10),
+                Duration.ofMinutes(1), refreshExecutor, new SimpleMeterRegistry());
+        UUID userId = UUID.randomUUID();
+
+        List<Provider> providers = tripPricer.getPrice("key", userId, 2, 1, 7, 500);
+        assertSame(providers, tripPricer.getPrice("key", userId, 2, 1, 7, 500));
+        assertEquals(1, calls.get());
+
+        tripPricer.getPrice("key", userId, 3, 1, 7, 500);
+        tripPricer.getPrice("key", userId, 2, 1, 7, 600);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void staleDealsAreServedWhileRefreshing() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        TripPricer slowReloads = new TripPricer() {
+            @Override
+            public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                           int rewardsPoints) {
+                if (calls.get() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return countingTripPricer.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints);
+            }
+        };
+        CachedTripPricer tripPricer = new CachedTripPricer(slowReloads, 100, Duration.ofMinutes(10),
+                Duration.ofMillis(20), refreshExecutor, new SimpleMeterRegistry());
+        UUID userId = UUID.randomUUID();
+
+        List<Provider> stale = tripPricer.getPrice("key", userId, 2, 1, 7, 500);
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertSame(stale, tripPricer.getPrice("key", userId, 2, 1, 7, 500));
+        assertSame(stale, tripPricer.getPrice("key", userId, 2, 1, 7, 500));
+        release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (tripPricer.getPrice("key", userId, 2, 1, 7, 500) == stale && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        assertNotSame(stale, tripPricer.getPrice("key", userId, 2, 1, 7, 500));
+        assertEquals(2, calls.get());
+    }
+}
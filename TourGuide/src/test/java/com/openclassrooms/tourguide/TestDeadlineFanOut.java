@@ -0,0 +1,102 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.executor.DeadlineFanOut;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDeadlineFanOut {
+    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void callsRunInParallel() {
+        DeadlineFanOut fanOut = new DeadlineFanOut(executor, 5000);
+
+        long start = System.nanoTime();
+        List<Integer> results = fanOut.map(List.of(1, 2, 3, 4, 5), element -> {
+            sleep(300);
+            return element * 10;
+        }, -1);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(List.of(10, 20, 30, 40, 50), results);
+        assertTrue(elapsedMillis < 1200, "five calls of 300 ms took " + elapsedMillis + " ms");
+        assertEquals(0, fanOut.getFallbacks());
+    }
+
+    @Test
+    public void lateAndFailedCallsGiveTheFallback() throws InterruptedException {
+        DeadlineFanOut fanOut = new DeadlineFanOut(executor, 200);
+        CountDownLatch release = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        List<Integer> results = fanOut.map(List.of(1, 2, 3), element -> {
+            if (element == 2) {
+                await(release);
+            }
+            if (element == 3) {
+                throw new IllegalStateException("unavailable");
+            }
+            return element * 10;
+        }, -1);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        assertEquals(List.of(10, -1, -1), results);
+        assertTrue(elapsedMillis < 2000, "the deadline of 200 ms was waited " + elapsedMillis + " ms");
+        assertEquals(2, fanOut.getFallbacks());
+    }
+
+    @Test
+    public void rejectedCallsGiveTheFallback() {
+        ExecutorService saturated = TourGuideExecutors.newBestEffortPool("test-points", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        saturated.execute(() -> await(release));
+        saturated.execute(() -> await(release));
+        DeadlineFanOut fanOut = new DeadlineFanOut(saturated, 5000);
+        AtomicInteger calls = new AtomicInteger();
+
+        long start = System.nanoTime();
+        List<Integer> results = fanOut.map(List.of(1, 2, 3, 4, 5), element -> calls.incrementAndGet(), -1);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+        saturated.shutdown();
+
+        // the rejected calls are neither run by the calling thread nor waited for
+        assertEquals(List.of(-1, -1, -1, -1, -1), results);
+        assertEquals(0, calls.get());
+        assertTrue(elapsedMillis < 2000, "rejected calls were waited " + elapsedMillis + " ms");
+        assertEquals(5, fanOut.getFallbacks());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.resilience.AdaptiveLimiter;
+import com.openclassrooms.tourguide.resilience.CircuitBreaker;
+import com.openclassrooms.tourguide.resilience.DependencyGuard;
+import com.openclassrooms.tourguide.resilience.DependencyUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDependencyGuard {
+
+    @Test
+    public void limitGrowsWithFastCallsAndShrinksWithSlowOnes() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10, 100);
+        // with 4 calls in progress the limit only grows while they use at least half of it
+        for (int i = 0; i < 200; i++) {
+            acquireAll(limiter, 4);
+            for (int j = 0; j < 4; j++) {
+                limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+            }
+        }
+        assertEquals(8, limiter.getLimit());
+        for (int i = 0; i < 200; i++) {
+            int permits = limiter.getLimit();
+            acquireAll(limiter, permits);
+            for (int j = 0; j < permits; j++) {
+                limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+            }
+        }
+        assertEquals(10, limiter.getLimit());
+
+        // each slow call started after the last backoff is a new congestion event
+        for (int i = 0; i < 3; i++) {
+            TimeUnit.MILLISECONDS.sleep(150);
+            assertTrue(limiter.tryAcquire(0));
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(120), false);
+        }
+        assertEquals(7, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void burstOfSlowCallsBacksOffOnce() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(200, 1, 200, 100);
+
+        // one latency spike seen by 200 calls in progress, some of them failed
+        acquireAll(limiter, 200);
+        for (int i = 0; i < 200; i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(500), i % 10 == 0);
+        }
+
+        assertEquals(180, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void callsOverTheLimitWaitThenAreRejected() throws InterruptedException {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DependencyGuard guard = new DependencyGuard("test", new CircuitBreaker(5, Duration.ofSeconds(30)),
+                new AdaptiveLimiter(1, 1, 1, 1000), 50, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.execute(() -> guard.call(() -> {
+            started.countDown();
+            await(release);
+            return 1;
+        }));
+        started.await();
+
+        DependencyUnavailableException e = assertThrows(DependencyUnavailableException.class, () -> guard.call(() -> 2));
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals("test", e.getService());
+        assertEquals(1, meterRegistry.get("tourguide.dependency.rejected").tags("service", "test", "reason", "limit")
+                .counter().count());
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitBreaker().getState());
+        assertEquals(2, guard.call(() -> 2));
+    }
+
+    @Test
+    public void circuitOpensOnFailuresAndClosesAfterATrialCall() throws InterruptedException {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DependencyGuard guard = new DependencyGuard("test", new CircuitBreaker(3, Duration.ofMillis(100)),
+                new AdaptiveLimiter(10, 1, 10, 1000), 1000, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException("down");
+            }));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitBreaker().getState());
+        assertThrows(DependencyUnavailableException.class, () -> guard.call(calls::incrementAndGet));
+        assertEquals(3, calls.get());
+        assertEquals(1, meterRegistry.get("tourguide.dependency.rejected").tags("service", "test", "reason", "circuit")
+                .counter().count());
+
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertEquals(4, guard.call(calls::incrementAndGet));
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitBreaker().getState());
+        assertFalse(guard.getLimiter().getLimit() > 10);
+    }
+
+    @Test
+    public void errorReleasesThePermitAndFailsTheTrialCall() throws InterruptedException {
+        DependencyGuard guard = new DependencyGuard("test", new CircuitBreaker(1, Duration.ofMillis(100)),
+                new AdaptiveLimiter(1, 1, 1, 1000), 50, new SimpleMeterRegistry());
+
+        assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+            throw new IllegalStateException("down");
+        }));
+        assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitBreaker().getState());
+
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertThrows(OutOfMemoryError.class, () -> guard.call(() -> {
+            throw new OutOfMemoryError("trial");
+        }));
+        // the trial call is over: the circuit opens again instead of staying half-open, and the permit is back
+        assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitBreaker().getState());
+        assertEquals(0, guard.getLimiter().getInFlight());
+
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertEquals(1, guard.call(() -> 1));
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitBreaker().getState());
+    }
+
+    private static void acquireAll(AdaptiveLimiter limiter, int permits) throws InterruptedException {
+        for (int i = 0; i < permits; i++) {
+            assertTrue(limiter.tryAcquire(0));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.DistanceEngine;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDistanceEngine {
+
+    private static final double TOLERANCE_MILES = 1e-3;
+
+    /**
+     * The formula RewardsService.getDistance used before the DistanceEngine.
+     */
+    private static double referenceDistance(Location loc1, Location loc2) {
+        double lat1 = Math.toRadians(loc1.latitude);
+        double lon1 = Math.toRadians(loc1.longitude);
+        double lat2 = Math.toRadians(loc2.latitude);
+        double lon2 = Math.toRadians(loc2.longitude);
+
+        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+
+        double nauticalMiles = 60 * Math.toDegrees(angle);
+        return 1.15077945 * nauticalMiles;
+    }
+
+    @Test
+    public void distancesMatchReferenceFormula() {
+        Random random = new Random(3);
+        List<Attraction> attractions = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            attractions.add(new Attraction("attraction" + i, "city", "state",
+                    random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        DistanceEngine distanceEngine = new DistanceEngine(attractions);
+        double[] distances = new double[distanceEngine.size()];
+
+        for (int q = 0; q < 100; q++) {
+            Location location = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            distanceEngine.distances(location, distances);
+            for (int i = 0; i < attractions.size(); i++) {
+                double expected = referenceDistance(location, attractions.get(i));
+                assertEquals(expected, DistanceEngine.distance(location, attractions.get(i)), TOLERANCE_MILES);
+                assertEquals(expected, distanceEngine.distance(i, location), TOLERANCE_MILES);
+                assertEquals(expected, distances[i], TOLERANCE_MILES);
+                for (double miles : new double[]{10, 200, 5000}) {
+                    assertEquals(expected <= miles, distanceEngine.isWithin(i, location, miles));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void samePointIsZeroAndNotNaN() {
+        List<Attraction> attractions = new GpsUtil().getAttractions();
+        DistanceEngine distanceEngine = new DistanceEngine(attractions);
+        double[] distances = new double[distanceEngine.size()];
+
+        for (int i = 0; i < attractions.size(); i++) {
+            Attraction attraction = attractions.get(i);
+            distanceEngine.distances(attraction, distances);
+            assertEquals(0, DistanceEngine.distance(attraction, attraction), TOLERANCE_MILES);
+            assertEquals(0, distanceEngine.distance(i, attraction), TOLERANCE_MILES);
+            assertEquals(0, distances[i], TOLERANCE_MILES);
+            assertTrue(distanceEngine.isWithin(i, attraction, 0.01));
+        }
+    }
+
+    @Test
+    public void antipodalPointsAreHalfTheCircumference() {
+        double halfCircumference = 180 * DistanceEngine.MILES_PER_DEGREE;
+        Attraction attraction = new Attraction("attraction", "city", "state", 33.817595, -117.922008);
+        DistanceEngine distanceEngine = new DistanceEngine(List.of(attraction));
+
+        Location antipode = new Location(-33.817595, 62.077992);
+        Location nearAntipode = new Location(-33.817595, 62.077993);
+
+        assertFalse(Double.isNaN(DistanceEngine.distance(attraction, antipode)));
+        assertEquals(halfCircumference, DistanceEngine.distance(attraction, antipode), 0.1);
+        assertEquals(halfCircumference, distanceEngine.distance(0, antipode), 0.1);
+        assertEquals(referenceDistance(attraction, nearAntipode), distanceEngine.distance(0, nearAntipode), 0.1);
+        assertEquals(halfCircumference, DistanceEngine.distance(new Location(90, 0), new Location(-90, 0)), 0.1);
+    }
+}
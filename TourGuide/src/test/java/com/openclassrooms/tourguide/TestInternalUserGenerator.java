@@ -0,0 +1,59 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.repository.UserRepository;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestInternalUserGenerator {
+    private static final long REFERENCE_TIME = 1700000000000L;
+
+    @Test
+    public void sameSeedSameUsers() {
+        UserRepository first = new InMemoryUserRepository();
+        UserRepository second = new InMemoryUserRepository();
+        new InternalUserGenerator(42, 5, REFERENCE_TIME).generate(1000, first::addUser);
+        new InternalUserGenerator(42, 5, REFERENCE_TIME).generate(1000, second::addUser);
+
+        assertEquals(1000, first.size());
+        for (User user : first.users()) {
+            User other = second.getUser(user.getUserName());
+            assertEquals(user.getUserId(), other.getUserId());
+            assertEquals(5, user.getVisitedLocations().size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(user.getVisitedLocations().get(i).location.latitude, other.getVisitedLocations().get(i).location.latitude);
+                assertEquals(user.getVisitedLocations().get(i).location.longitude, other.getVisitedLocations().get(i).location.longitude);
+                assertEquals(user.getVisitedLocations().get(i).timeVisited, other.getVisitedLocations().get(i).timeVisited);
+            }
+        }
+        assertNotEquals(new InternalUserGenerator(42, 5).generate(0).getUserId(),
+                new InternalUserGenerator(43, 5).generate(0).getUserId());
+    }
+
+    @Test
+    public void generatedValuesAreInRange() {
+        UserRepository userRepository = new InMemoryUserRepository();
+        new InternalUserGenerator(7, 3, REFERENCE_TIME).generate(10000, userRepository::addUser);
+
+        assertEquals(10000, userRepository.stream().map(User::getUserId).distinct().count());
+        for (User user : userRepository.users()) {
+            assertEquals(4, user.getUserId().version());
+            assertEquals(user.getUserName() + "@tourGuide.com", user.getEmailAddress());
+            for (VisitedLocation visitedLocation : user.getVisitedLocations()) {
+                assertTrue(Math.abs(visitedLocation.location.latitude) <= 85.05112878);
+                assertTrue(Math.abs(visitedLocation.location.longitude) <= 180);
+                long age = REFERENCE_TIME - visitedLocation.timeVisited.getTime();
+                assertTrue(age >= 0 && age < TimeUnit.DAYS.toMillis(30));
+                assertEquals(user.getUserId(), visitedLocation.userId);
+            }
+        }
+    }
+}
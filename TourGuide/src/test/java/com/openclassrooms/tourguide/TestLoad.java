@@ -0,0 +1,262 @@
+package com.openclassrooms.tourguide;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.openclassrooms.tourguide.cache.CachedRewardCentral;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.persistence.UserJournal;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.LocationUpdatePublisher;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load test of the tracking and of the rewards calculation, excluded from the normal build. Run it with the load-test
+ * profile, the parameters are system properties:
+ *
+ * mvn -P load-test test -Dloadtest.users=100000 -Dloadtest.gps-latency-ms=100
+ *
+ * loadtest.users: number of users (10000).
+ * loadtest.history: number of VisitedLocation generated for each User (3).
+ * loadtest.attractions: number of Attraction of the random catalog (26).
+ * loadtest.gps-latency-ms: mean latency of gpsUtil.getUserLocation (50).
+ * loadtest.reward-latency-ms: mean latency of RewardCentral.getAttractionRewardPoints (50).
+ * loadtest.report: the JSON report (target/load-test-report.json).
+ *
+ * The simulated latencies are uniform between half and one and a half of the mean. The report has, for each phase,
+ * the throughput in users per second, the p50/p95/p99 latency per User and the peak heap.
+ */
+@Tag("load-test")
+public class TestLoad {
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final int userNumber = Integer.getInteger("loadtest.users", 10000);
+    private final int historyLength = Integer.getInteger("loadtest.history", 3);
+    private final int attractionNumber = Integer.getInteger("loadtest.attractions", 26);
+    private final int gpsLatencyMillis = Integer.getInteger("loadtest.gps-latency-ms", 50);
+    private final int rewardLatencyMillis = Integer.getInteger("loadtest.reward-latency-ms", 50);
+    private final Path report = Path.of(System.getProperty("loadtest.report", "target/load-test-report.json"));
+
+    @Test
+    public void trackAndRewardUsers() throws IOException {
+        Map<UUID, Long> fetchStarts = new ConcurrentHashMap<>();
+        SimulatedGpsUtil gpsUtil = new SimulatedGpsUtil(attractionNumber, gpsLatencyMillis, fetchStarts);
+        CachedRewardCentral rewardCentral = new CachedRewardCentral(new SimulatedRewardCentral(rewardLatencyMillis),
+                CachedRewardCentral.DEFAULT_MAXIMUM_SIZE, CachedRewardCentral.DEFAULT_EXPIRE_AFTER_WRITE,
+                TourGuideExecutors.defaultPrefetchExecutor(), Metrics.globalRegistry);
+        MeasuredRewardsService rewardsService = new MeasuredRewardsService(gpsUtil, rewardCentral, fetchStarts);
+        TrackingPipeline trackingPipeline = new TrackingPipeline(gpsUtil, rewardsService, UserJournal.disabled(),
+                LocationUpdatePublisher.disabled(), TourGuideExecutors.defaultTrackingExecutor(),
+                TourGuideExecutors.defaultTrackerRewardsExecutor(), TrackingPipeline.DEFAULT_REWARD_WORKERS,
+                TrackingPipeline.DEFAULT_QUEUE_CAPACITY);
+
+        InternalTestHelper.setInternalUserNumber(userNumber);
+        InternalTestHelper.setInternalUserHistoryLength(historyLength);
+        TourGuideService tourGuideService = new TourGuideServiceBuilder(gpsUtil, rewardsService)
+                .trackingPipeline(trackingPipeline)
+                .rewardCentral(rewardCentral)
+                .build();
+        // the Tracker starts with a slot of users, wait for it so that the phases are measured alone
+        tourGuideService.tracker.stopTracking();
+        while (trackingPipeline.getPendingUsers() > 0) {
+            sleep(10);
+        }
+        fetchStarts.clear();
+        List<User> users = tourGuideService.getAllUsers();
+        Map<String, Object> phases = new LinkedHashMap<>();
+
+        Phase tracking = new Phase(rewardsService);
+        TrackingPipeline.Stats stats = tourGuideService.trackUsersLocation(users);
+        phases.put("trackUsersLocation", tracking.end(users.size()));
+        assertEquals(0, stats.getFailed());
+
+        List<Attraction> attractions = gpsUtil.getAttractions();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(i % attractions.size()), new Date()));
+        }
+        Phase rewards = new Phase(rewardsService);
+        rewardsService.calculateRewardsForAllUsers(users);
+        phases.put("calculateRewardsForAllUsers", rewards.end(users.size()));
+
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("users", userNumber);
+        parameters.put("history", historyLength);
+        parameters.put("attractions", attractionNumber);
+        parameters.put("gpsLatencyMillis", gpsLatencyMillis);
+        parameters.put("rewardLatencyMillis", rewardLatencyMillis);
+        Map<String, Object> environment = new LinkedHashMap<>();
+        environment.put("javaVersion", System.getProperty("java.version"));
+        environment.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        environment.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", Instant.now().toString());
+        result.put("parameters", parameters);
+        result.put("environment", environment);
+        result.put("phases", phases);
+
+        if (report.getParent() != null) {
+            Files.createDirectories(report.getParent());
+        }
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(report.toFile(), result);
+        System.out.println(objectMapper.writeValueAsString(phases));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void simulateLatency(int meanMillis) {
+        if (meanMillis > 0) {
+            sleep(ThreadLocalRandom.current().nextLong(meanMillis / 2, meanMillis * 3L / 2 + 1));
+        }
+    }
+
+    /**
+     * One measured phase: its duration, the latency of each User recorded by the MeasuredRewardsService, and the peak
+     * heap of its duration.
+     */
+    private static class Phase {
+        private final long start = System.nanoTime();
+        private final Timer latency = Timer.builder("loadtest.latency").publishPercentiles(PERCENTILES)
+                .register(new SimpleMeterRegistry());
+
+        Phase(MeasuredRewardsService rewardsService) {
+            ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+            rewardsService.latency = latency;
+        }
+
+        Map<String, Object> end(int users) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long peakHeap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                    .sum();
+            Map<String, Object> phase = new LinkedHashMap<>();
+            phase.put("users", users);
+            phase.put("seconds", seconds);
+            phase.put("usersPerSecond", users / seconds);
+            for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()) {
+                phase.put("p%.0fMillis".formatted(percentile.percentile() * 100), percentile.value(TimeUnit.MILLISECONDS));
+            }
+            phase.put("maxMillis", latency.max(TimeUnit.MILLISECONDS));
+            phase.put("peakHeapBytes", peakHeap);
+            return phase;
+        }
+    }
+
+    /**
+     * RewardsService recording the latency of each User: from the start of its gpsUtil call when it is tracked, or
+     * else from the start of its calculateRewards.
+     */
+    private static class MeasuredRewardsService extends RewardsService {
+        private final Map<UUID, Long> fetchStarts;
+        private volatile Timer latency;
+
+        MeasuredRewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, Map<UUID, Long> fetchStarts) {
+            super(gpsUtil, rewardCentral);
+            this.fetchStarts = fetchStarts;
+        }
+
+        @Override
+        public void calculateRewards(User user) {
+            long start = System.nanoTime();
+            super.calculateRewards(user);
+            Long fetchStart = fetchStarts.remove(user.getUserId());
+            Timer timer = latency;
+            if (timer != null) {
+                timer.record(System.nanoTime() - (fetchStart == null ? start : fetchStart), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * GpsUtil with a random catalog of any size and a simulated latency. A quarter of the locations are on an
+     * Attraction, so that the tracking also calculates rewards.
+     */
+    private static class SimulatedGpsUtil extends GpsUtil {
+        private final List<Attraction> attractions = new ArrayList<>();
+        private final int latencyMillis;
+        private final Map<UUID, Long> fetchStarts;
+
+        SimulatedGpsUtil(int attractionNumber, int latencyMillis, Map<UUID, Long> fetchStarts) {
+            this.latencyMillis = latencyMillis;
+            this.fetchStarts = fetchStarts;
+            SplittableRandom random = new SplittableRandom(attractionNumber);
+            for (int i = 0; i < attractionNumber; i++) {
+                attractions.add(new Attraction("Attraction " + i, "City", "State",
+                        random.nextDouble(-85, 85), random.nextDouble(-180, 180)));
+            }
+        }
+
+        @Override
+        public VisitedLocation getUserLocation(UUID userId) {
+            fetchStarts.put(userId, System.nanoTime());
+            simulateLatency(latencyMillis);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Location location = random.nextInt(4) == 0 ? attractions.get(random.nextInt(attractions.size()))
+                    : new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180));
+            return new VisitedLocation(userId, location, new Date());
+        }
+
+        @Override
+        public List<Attraction> getAttractions() {
+            return new ArrayList<>(attractions);
+        }
+    }
+
+    /**
+     * RewardCentral with a simulated latency, the points are derived from the ids.
+     */
+    private static class SimulatedRewardCentral extends RewardCentral {
+        private final int latencyMillis;
+
+        SimulatedRewardCentral(int latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+            simulateLatency(latencyMillis);
+            return 1 + Math.floorMod(attractionId.hashCode() ^ userId.hashCode(), 1000);
+        }
+    }
+}
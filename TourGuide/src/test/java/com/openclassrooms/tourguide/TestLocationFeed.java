@@ -0,0 +1,190 @@
+package com.openclassrooms.tourguide;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.tourguide.controller.LocationFeed;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.LocationUpdatePublisher;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLocationFeed {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void streamCurrentLocations() throws IOException {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(0, 0), new Date(0)));
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, -i), new Date(i)));
+            tourGuideService.addUser(user);
+            users.add(user);
+        }
+        tourGuideService.addUser(new User(UUID.randomUUID(), "noLocation", "000", "noLocation@tourGuide.com"));
+        LocationFeed locationFeed = new LocationFeed(tourGuideService, LocationUpdatePublisher.disabled(), objectMapper, 0);
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        locationFeed.currentLocations(false, 3).writeTo(ndjson);
+        String[] lines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(10, lines.length);
+        for (String line : lines) {
+            JsonNode node = objectMapper.readTree(line);
+            User user = tourGuideService.getAllUsers().stream()
+                    .filter(u -> u.getUserId().toString().equals(node.get("userId").asText())).findFirst().orElseThrow();
+            assertEquals(user.getLastVisitedLocation().location.latitude, node.get("location").get("latitude").asDouble());
+            assertEquals(user.getLastVisitedLocation().timeVisited.getTime(), node.get("timeVisited").asLong());
+        }
+
+        ByteArrayOutputStream sse = new ByteArrayOutputStream();
+        locationFeed.currentLocations(true, 1).writeTo(sse);
+        String[] events = sse.toString(StandardCharsets.UTF_8).split("\n\n");
+        assertEquals(10, events.length);
+        for (String event : events) {
+            assertTrue(event.startsWith("event:location\ndata:{"));
+        }
+    }
+
+    @Test
+    public void publishLocationUpdates() throws InterruptedException {
+        LocationUpdatePublisher publisher = new LocationUpdatePublisher(TourGuideExecutors.defaultTrackingExecutor(), 4);
+        BlockingQueue<VisitedLocation> received = new LinkedBlockingQueue<>();
+        CountDownLatch blocked = new CountDownLatch(1);
+        publisher.publish(new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date()));
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(VisitedLocation item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        // a subscriber that never reads: its buffer fills up and the next locations are dropped for it only
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                blocked.countDown();
+            }
+
+            @Override
+            public void onNext(VisitedLocation item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        assertEquals(2, publisher.getSubscriberCount());
+
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < 20; i++) {
+            publisher.publish(new VisitedLocation(userId, new Location(i, i), new Date()));
+            assertEquals(i, received.poll(1, TimeUnit.SECONDS).location.latitude);
+        }
+        publisher.close();
+
+        assertTrue(publisher.getDropped() > 0);
+    }
+
+    @Test
+    public void publishNeverDeliversFromThePublishingThread() throws InterruptedException {
+        ExecutorService executor = TourGuideExecutors.newBestEffortPool("test-locations", 1, 1);
+        LocationUpdatePublisher publisher = new LocationUpdatePublisher(executor, 4);
+        CountDownLatch subscribed = new CountDownLatch(3);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> deliveries = new CopyOnWriteArrayList<>();
+        // three slow subscribers: one delivery runs, one waits in the queue, the last one is rejected
+        for (int i = 0; i < 3; i++) {
+            publisher.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                    subscribed.countDown();
+                }
+
+                @Override
+                public void onNext(VisitedLocation item) {
+                    deliveries.add(Thread.currentThread());
+                    await(release);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            // the subscription is delivered by the single thread too
+            Thread.sleep(50);
+        }
+        assertTrue(subscribed.await(1, TimeUnit.SECONDS));
+
+        publisher.publish(new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date()));
+        release.countDown();
+        publisher.close();
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertFalse(deliveries.contains(Thread.currentThread()));
+        assertTrue(publisher.getDropped() > 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.user.LocationHistory;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestLocationHistory {
+
+    @Test
+    public void storesEveryLocation() {
+        UUID userId = UUID.randomUUID();
+        LocationHistory locationHistory = new LocationHistory(userId);
+        for (int i = 0; i < 1000; i++) {
+            locationHistory.add(new VisitedLocation(userId, new Location(i / 10.0, -i / 10.0), new Date(i * 1000L)));
+        }
+
+        assertEquals(1000, locationHistory.size());
+        for (int i = 0; i < 1000; i++) {
+            VisitedLocation visitedLocation = locationHistory.get(i);
+            assertEquals(userId, visitedLocation.userId);
+            assertEquals(i / 10.0, visitedLocation.location.latitude);
+            assertEquals(-i / 10.0, visitedLocation.location.longitude);
+            assertEquals(i * 1000L, visitedLocation.timeVisited.getTime());
+        }
+        assertEquals(99.9, locationHistory.getLast().location.latitude);
+    }
+
+    @Test
+    public void keepsNullTime() {
+        UUID userId = UUID.randomUUID();
+        LocationHistory locationHistory = new LocationHistory(userId);
+        locationHistory.add(new VisitedLocation(userId, new Location(1, 2), null));
+
+        assertNull(locationHistory.getLast().timeVisited);
+    }
+
+    @Test
+    public void listViewFollowsTheHistory() {
+        UUID userId = UUID.randomUUID();
+        LocationHistory locationHistory = new LocationHistory(userId);
+        locationHistory.add(new VisitedLocation(userId, new Location(1, 2), new Date()));
+
+        int seen = 0;
+        for (VisitedLocation ignored : locationHistory.asList()) {
+            if (seen++ < 10) {
+                locationHistory.add(new VisitedLocation(userId, new Location(1, 2), new Date()));
+            }
+        }
+        assertEquals(11, seen);
+
+        locationHistory.clear();
+        assertEquals(0, locationHistory.asList().size());
+        assertThrows(IndexOutOfBoundsException.class, locationHistory::getLast);
+        assertThrows(UnsupportedOperationException.class,
+                () -> locationHistory.asList().add(new VisitedLocation(userId, new Location(1, 2), new Date())));
+    }
+}
@@ -0,0 +1,84 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.CallTimer;
+import com.openclassrooms.tourguide.metrics.TimedGpsUtil;
+import com.openclassrooms.tourguide.metrics.TimedRewardCentral;
+import com.openclassrooms.tourguide.persistence.UserJournal;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.LocationUpdatePublisher;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMetrics {
+
+    @Test
+    public void externalCallsAreTimed() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GpsUtil gpsUtil = new TimedGpsUtil(new GpsUtil(), meterRegistry);
+        RewardCentral rewardCentral = new TimedRewardCentral(new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                throw new IllegalStateException("unavailable");
+            }
+        }, meterRegistry);
+
+        gpsUtil.getUserLocation(UUID.randomUUID());
+        gpsUtil.getUserLocation(UUID.randomUUID());
+        assertThrows(IllegalStateException.class, () -> rewardCentral.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID()));
+
+        assertEquals(2, meterRegistry.get(CallTimer.NAME).tags("service", "gpsUtil", "outcome", "success").timer().count());
+        assertEquals(0, meterRegistry.get(CallTimer.NAME).tags("service", "gpsUtil", "outcome", "error").timer().count());
+        assertEquals(1, meterRegistry.get(CallTimer.NAME).tags("service", "rewardCentral", "outcome", "error").timer().count());
+    }
+
+    @Test
+    public void trackerIsMeasured() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(new AttractionCatalog(gpsUtil::getAttractions),
+                new RewardCentral(), TourGuideExecutors.defaultRewardsExecutor(), UserJournal.disabled(), meterRegistry);
+        TrackingPipeline trackingPipeline = new TrackingPipeline(gpsUtil, rewardsService, UserJournal.disabled(),
+                LocationUpdatePublisher.disabled(), TourGuideExecutors.defaultTrackingExecutor(),
+                TourGuideExecutors.defaultTrackerRewardsExecutor(), 2, 10);
+
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideServiceBuilder(gpsUtil, rewardsService)
+                .trackingPipeline(trackingPipeline)
+                .meterRegistry(meterRegistry)
+                .build();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+            tourGuideService.addUser(user);
+            users.add(user);
+        }
+        tourGuideService.trackUsersLocation(users);
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(20, meterRegistry.get("tourguide.tracker.users").gauge().value());
+        // a cycle passes over the 60 slots of the 5 minutes polling interval, a slot is timed on its own
+        assertTrue(meterRegistry.get("tourguide.tracker.slot").timer().count() <= 1);
+        assertEquals(0, meterRegistry.get("tourguide.tracker.cycle").timer().count());
+        // the Tracker thread may have tracked some of the users too
+        assertTrue(meterRegistry.get("tourguide.rewards.calculation").timer().count() >= 20);
+        assertEquals(0, trackingPipeline.getPendingUsers());
+        assertEquals(0, trackingPipeline.getQueueDepth());
+    }
+}
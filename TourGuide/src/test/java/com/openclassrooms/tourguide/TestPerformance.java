@@ -1,6 +1,7 @@
 package com.openclassrooms.tourguide;
 
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.persistence.UserSnapshot;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -10,13 +11,17 @@ import gpsUtil.location.VisitedLocation;
 import org.apache.commons.lang3.time.StopWatch;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import rewardCentral.RewardCentral;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -101,4 +106,53 @@ public class TestPerformance {
                 + " seconds.");
         assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
     }
+
+    @Disabled
+    @Test
+    public void highVolumeStartupFromSnapshot(@TempDir Path directory) throws IOException {
+        compareStartup(100000, directory);
+    }
+
+    @Disabled
+    @Test
+    public void veryHighVolumeStartupFromSnapshot(@TempDir Path directory) throws IOException {
+        compareStartup(1000000, directory);
+    }
+
+    /**
+     * Start a TourGuideService that generates its users, write a snapshot of them, then start a TourGuideService that
+     * restores them from the snapshot.
+     */
+    private void compareStartup(int userNumber, Path directory) throws IOException {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(userNumber);
+
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+        TourGuideService generated = new TourGuideService(gpsUtil, rewardsService);
+        stopWatch.stop();
+        generated.tracker.stopTracking();
+        long generationMillis = stopWatch.getTime();
+
+        UserSnapshot userSnapshot = new UserSnapshot(directory.resolve("users.snapshot"), 0);
+        stopWatch.reset();
+        stopWatch.start();
+        userSnapshot.write(generated.getAllUsers());
+        stopWatch.stop();
+        long writeMillis = stopWatch.getTime();
+        generated = null;
+
+        stopWatch.reset();
+        stopWatch.start();
+        TourGuideService restored = new TourGuideServiceBuilder(gpsUtil, rewardsService)
+                .userSnapshot(userSnapshot)
+                .build();
+        stopWatch.stop();
+        restored.tracker.stopTracking();
+
+        System.out.println("startup with " + userNumber + " users: generation " + generationMillis
+                + " ms, snapshot write " + writeMillis + " ms, snapshot restore " + stopWatch.getTime() + " ms.");
+        assertEquals(userNumber, restored.getAllUsers().size());
+    }
 }
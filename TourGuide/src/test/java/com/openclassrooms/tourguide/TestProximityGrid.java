@@ -0,0 +1,54 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.ProximityGrid;
+import com.openclassrooms.tourguide.service.RewardsService;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestProximityGrid {
+
+    private final RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+
+    @Test
+    public void candidatesContainEveryAttractionInRange() {
+        Random random = new Random(7);
+        List<Attraction> attractions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            attractions.add(new Attraction("attraction" + i, "city", "state",
+                    random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        attractions.add(new Attraction("north pole", "city", "state", 90, 0));
+        attractions.add(new Attraction("east", "city", "state", 0, 179.95));
+        attractions.add(new Attraction("west", "city", "state", 0, -179.95));
+
+        List<Location> queries = new ArrayList<>(List.of(new Location(89.95, 120), new Location(0, 180),
+                new Location(0, -180), new Location(-90, 0)));
+        for (int i = 0; i < 200; i++) {
+            queries.add(new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+
+        for (int radius : new int[]{10, 200, 3000, 20000}) {
+            ProximityGrid grid = new ProximityGrid(attractions, radius);
+            for (Location query : queries) {
+                Set<Integer> candidates = new HashSet<>();
+                grid.forEachCandidate(query, candidates::add);
+                for (int i = 0; i < attractions.size(); i++) {
+                    if (rewardsService.getDistance(query, attractions.get(i)) <= radius) {
+                        assertTrue(candidates.contains(i), "radius " + radius + " missed " + attractions.get(i).attractionName);
+                    }
+                }
+            }
+        }
+    }
+}
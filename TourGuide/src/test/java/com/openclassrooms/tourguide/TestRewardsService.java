@@ -1,19 +1,32 @@
 package com.openclassrooms.tourguide;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.persistence.UserJournal;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import rewardCentral.RewardCentral;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -37,6 +50,136 @@ public class TestRewardsService {
         assertTrue(userRewards.size() == 1);
     }
 
+    @Test
+    public void calculateRewardsOnlyEvaluatesNewLocations() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        List<Attraction> attractions = gpsUtil.getAttractions();
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(0), new Date()));
+        rewardsService.calculateRewards(user);
+        assertEquals(1, user.getUserRewards().size());
+        assertEquals(1, user.getRewardedLocationCount());
+
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(0), new Date()));
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(1), new Date()));
+        rewardsService.calculateRewards(user);
+        assertEquals(2, user.getUserRewards().size());
+        assertEquals(3, user.getRewardedLocationCount());
+    }
+
+    @Test
+    public void setProximityBufferRecomputesAllLocations() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        Attraction attraction = gpsUtil.getAttractions().get(0);
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        Location location = new Location(attraction.latitude + 1.5, attraction.longitude);
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date()));
+        rewardsService.calculateRewards(user);
+        assertTrue(user.getUserRewards().isEmpty());
+
+        rewardsService.setProximityBuffer(150);
+        rewardsService.calculateRewards(user);
+        assertTrue(user.getUserRewards().stream().anyMatch(r -> r.attraction.attractionName.equals(attraction.attractionName)));
+    }
+
+    @Test
+    public void concurrentCalculationsAndAddUserRewardGiveNoDuplicate() throws Exception {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardCentral slowRewardCentral = new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                // RewardCentral is called without the lock of the User, leave the other threads time to interleave
+                sleep(1);
+                return 10;
+            }
+        };
+        RewardsService rewardsService = new RewardsService(new AttractionCatalog(gpsUtil::getAttractions),
+                slowRewardCentral, TourGuideExecutors.defaultRewardsExecutor(), UserJournal.disabled(),
+                new SimpleMeterRegistry());
+        rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+        List<Attraction> attractions = rewardsService.getAttractionCatalog().current().getAttractions();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            for (int round = 0; round < 10; round++) {
+                User user = new User(UUID.randomUUID(), "jon" + round, "000", "jon@tourGuide.com");
+                VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+                user.addToVisitedLocations(visitedLocation);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        rewardsService.calculateRewards(user);
+                        return null;
+                    }));
+                    int offset = i;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        for (int j = 0; j < attractions.size(); j++) {
+                            Attraction attraction = attractions.get((j + offset * 7) % attractions.size());
+                            user.addUserReward(new UserReward(visitedLocation, attraction, 1));
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+
+                List<String> names = user.getUserRewards().stream().map(r -> r.attraction.attractionName).toList();
+                assertEquals(attractions.size(), names.size());
+                assertEquals(attractions.size(), names.stream().distinct().count());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rewardsAreDedupedByNameWhenAttractionIdsChange() {
+        GpsUtil gpsUtil = new GpsUtil();
+        AtomicInteger loads = new AtomicInteger();
+        // every load gives new attractionId, and a move of the attractions that publishes a new catalog version
+        AttractionCatalog catalog = new AttractionCatalog(() -> {
+            double shift = loads.getAndIncrement() * 0.000001;
+            return gpsUtil.getAttractions().stream()
+                    .map(a -> new Attraction(a.attractionName, a.city, a.state, a.latitude + shift, a.longitude))
+                    .collect(Collectors.toList());
+        });
+        AtomicInteger calls = new AtomicInteger();
+        RewardCentral countingRewardCentral = new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                calls.incrementAndGet();
+                return 10;
+            }
+        };
+        RewardsService rewardsService = new RewardsService(catalog, countingRewardCentral,
+                TourGuideExecutors.defaultRewardsExecutor(), UserJournal.disabled(), new SimpleMeterRegistry());
+        rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+        List<Attraction> firstAttractions = catalog.current().getAttractions();
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), firstAttractions.get(0), new Date()));
+        rewardsService.calculateRewards(user);
+        assertEquals(firstAttractions.size(), user.getUserRewards().size());
+
+        assertTrue(catalog.refresh());
+        List<Attraction> secondAttractions = catalog.current().getAttractions();
+        assertTrue(secondAttractions.stream().noneMatch(a -> a.attractionId.equals(firstAttractions.get(0).attractionId)));
+        // the new catalog version recomputes every location of the User, with the new attractionId
+        rewardsService.calculateRewards(user);
+
+        assertEquals(firstAttractions.size(), user.getUserRewards().size());
+        assertEquals(firstAttractions.size(), calls.get());
+    }
+
     @Test
     public void isWithinAttractionProximity() {
         GpsUtil gpsUtil = new GpsUtil();
@@ -76,4 +219,12 @@ public class TestRewardsService {
 
         tourGuideService.getAllUsers().forEach(user -> assertEquals(gpsUtil.getAttractions().size(), user.getUserRewards().size()));
     }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.executor.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSingleFlight {
+    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+
+    @Test
+    public void coalescesConcurrentCalls() throws Exception {
+        SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        futures.add(CompletableFuture.supplyAsync(() -> singleFlight.run("jon", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return new Object();
+        }), executor));
+        waitUntil(() -> singleFlight.getInFlight() == 1);
+        for (int i = 0; i < 9; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> singleFlight.run("jon", () -> {
+                calls.incrementAndGet();
+                return new Object();
+            }), executor));
+        }
+        waitUntil(() -> singleFlight.getCoalesced() == 9);
+        release.countDown();
+
+        Object result = futures.get(0).get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Object> future : futures) {
+            assertSame(result, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.getInFlight());
+
+        singleFlight.run("jon", calls::incrementAndGet);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void sharesFailureWithWaitingCalls() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> singleFlight.run("jon", () -> {
+            await(release);
+            throw new IllegalStateException("gps down");
+        }), executor);
+        waitUntil(() -> singleFlight.getInFlight() == 1);
+        CompletableFuture<Integer> follower = CompletableFuture.supplyAsync(() -> singleFlight.run("jon", () -> 1), executor);
+        waitUntil(() -> singleFlight.getCoalesced() == 1);
+        release.countDown();
+
+        for (CompletableFuture<Integer> future : List.of(leader, follower)) {
+            Exception e = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("gps down", e.getCause().getMessage());
+        }
+        assertEquals(2, singleFlight.run("jon", () -> 2));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
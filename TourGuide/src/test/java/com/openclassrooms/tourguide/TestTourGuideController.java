@@ -0,0 +1,204 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.controller.LocationFeed;
+import com.openclassrooms.tourguide.controller.TourGuideController;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.resilience.DependencyUnavailableException;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = TourGuideController.class, properties = "tourguide.web.timeout.trip-deals-ms=100")
+@Import(TestTourGuideController.WebExecutorConfiguration.class)
+public class TestTourGuideController {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TourGuideService tourGuideService;
+
+    @MockBean
+    private LocationFeed locationFeed;
+
+    @Autowired
+    private ExecutorService webExecutor;
+
+    @Test
+    public void getLocationIsAsynchronous() throws Exception {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(1, 2), new Date());
+        when(tourGuideService.getUser("jon")).thenReturn(user);
+        when(tourGuideService.getUserLocation(user)).thenReturn(visitedLocation);
+
+        MvcResult result = mockMvc.perform(get("/getLocation").param("userName", "jon"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userId").value(user.getUserId().toString()))
+                .andExpect(jsonPath("$.location.longitude").value(2.0));
+    }
+
+    @Test
+    public void slowTripDealsTimeOut() throws Exception {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        when(tourGuideService.getUser("jon")).thenReturn(user);
+        when(tourGuideService.getTripDeals(user)).thenAnswer(invocation -> {
+            TimeUnit.SECONDS.sleep(1);
+            return List.of();
+        });
+
+        MvcResult result = mockMvc.perform(get("/getTripDeals").param("userName", "jon"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    public void unavailableDependencyIsServiceUnavailable() throws Exception {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        when(tourGuideService.getUser("jon")).thenReturn(user);
+        when(tourGuideService.getTripDeals(user)).thenThrow(new DependencyUnavailableException("tripPricer", "circuit open"));
+
+        MvcResult result = mockMvc.perform(get("/getTripDeals").param("userName", "jon"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void fullWebExecutorIsServiceUnavailable() throws Exception {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        when(tourGuideService.getUser("jon")).thenReturn(user);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            occupyWebExecutor(release, 2);
+
+            MvcResult result = mockMvc.perform(get("/getTripDeals").param("userName", "jon"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            release.countDown();
+        }
+        awaitWebExecutor();
+        verify(tourGuideService, never()).getTripDeals(any());
+    }
+
+    @Test
+    public void timedOutQueuedCallIsSkipped() throws Exception {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        when(tourGuideService.getUser("jon")).thenReturn(user);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // one place of the queue is left for the request, which waits there past its timeout
+            occupyWebExecutor(release, 1);
+
+            MvcResult result = mockMvc.perform(get("/getTripDeals").param("userName", "jon"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isGatewayTimeout());
+        } finally {
+            release.countDown();
+        }
+        awaitWebExecutor();
+        verify(tourGuideService, never()).getUser("jon");
+        verify(tourGuideService, never()).getTripDeals(any());
+    }
+
+    /**
+     * Block both threads of the web executor until release, and put queued tasks waiting for it in its queue.
+     */
+    private void occupyWebExecutor(CountDownLatch release, int queued) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            webExecutor.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < queued; i++) {
+            webExecutor.execute(() -> await(release));
+        }
+    }
+
+    /**
+     * Wait until the tasks submitted so far are over: the queue being first in first out, both threads only run the
+     * two last tasks together once they are done with the earlier ones. A task is submitted again while the queue is
+     * still full.
+     */
+    private void awaitWebExecutor() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            while (true) {
+                try {
+                    webExecutor.execute(() -> {
+                        done.countDown();
+                        await(done);
+                    });
+                    break;
+                } catch (RejectedExecutionException e) {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                }
+            }
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @TestConfiguration
+    static class WebExecutorConfiguration {
+
+        @Bean(destroyMethod = "shutdown")
+        public ExecutorService webExecutor() {
+            return TourGuideExecutors.newBestEffortPool("test-web", 2, 2);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTourGuideExecutors {
+
+    @Test
+    public void boundedPoolRunsTheTaskOnTheCallerWhenFull() throws InterruptedException {
+        ExecutorService executor = TourGuideExecutors.newBoundedPool("test-bounded", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(executor, release);
+            AtomicReference<Thread> runner = new AtomicReference<>();
+
+            executor.execute(() -> runner.set(Thread.currentThread()));
+
+            // the producer is slowed down by running the task itself, nothing is rejected
+            assertEquals(Thread.currentThread(), runner.get());
+        } finally {
+            release.countDown();
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    public void bestEffortPoolRejectsTheTaskWhenFull() throws InterruptedException {
+        ExecutorService executor = TourGuideExecutors.newBestEffortPool("test-best-effort", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(executor, release);
+            AtomicBoolean ran = new AtomicBoolean();
+
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> ran.set(true)));
+
+            release.countDown();
+            shutdown(executor);
+            assertFalse(ran.get());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void ioExecutorFallsBackToAPoolWithoutVirtualThreads() throws Exception {
+        ExecutorService executor = TourGuideExecutors.newIoExecutor("test-io", 3, 5, true);
+        try {
+            String threadName = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+            if (TourGuideExecutors.isVirtualThreadSupported()) {
+                assertFalse(executor instanceof ThreadPoolExecutor);
+            } else {
+                ThreadPoolExecutor pool = assertInstanceOf(ThreadPoolExecutor.class, executor);
+                assertEquals(3, pool.getMaximumPoolSize());
+                assertEquals(5, pool.getQueue().remainingCapacity());
+                assertTrue(threadName.startsWith("test-io-"), threadName);
+            }
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    public void ioExecutorIsAPoolWhenVirtualThreadsAreDisabled() {
+        ExecutorService executor = TourGuideExecutors.newIoExecutor("test-io", 3, 5, false);
+        try {
+            assertEquals(3, assertInstanceOf(ThreadPoolExecutor.class, executor).getMaximumPoolSize());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Block the single thread of the executor and fill its queue of one task.
+     */
+    private static void saturate(ExecutorService executor, CountDownLatch release) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> await(release));
+    }
+
+    private static void shutdown(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,22 +1,45 @@
 package com.openclassrooms.tourguide;
 
+import com.openclassrooms.tourguide.cache.CachedRewardCentral;
+import com.openclassrooms.tourguide.dto.AttractionDTO;
+import com.openclassrooms.tourguide.dto.NearbyAttractionsDTO;
+import com.openclassrooms.tourguide.executor.DeadlineFanOut;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.persistence.MappedUserJournal;
+import com.openclassrooms.tourguide.persistence.UserJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshot;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.LocationUpdatePublisher;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import rewardCentral.RewardCentral;
 import tripPricer.Provider;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -81,6 +104,58 @@ public class TestTourGuideService {
         assertTrue(allUsers.contains(user2));
     }
 
+    @Test
+    public void getUsersOfBatch() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+        User user3 = new User(UUID.randomUUID(), "paul", "000", "paul@tourGuide.com");
+        tourGuideService.addUser(user);
+        tourGuideService.addUser(user2);
+        tourGuideService.addUser(user3);
+
+        List<User> named = tourGuideService.getUsers(List.of("paul", "unknown", "jon", "paul"), null);
+        List<User> prefixed = tourGuideService.getUsers(null, "jon");
+        List<User> both = tourGuideService.getUsers(List.of("paul", "jon2"), "jon");
+
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(List.of(user3, user), named);
+        assertEquals(2, prefixed.size());
+        assertTrue(prefixed.containsAll(List.of(user, user2)));
+        assertEquals(List.of(user2), both);
+    }
+
+    @Test
+    public void getUserLocationsOfBatch() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+            if (i % 2 == 0) {
+                user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+            }
+            users.add(user);
+        }
+        Map<String, VisitedLocation> locations = tourGuideService.getUserLocations(users);
+
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(users.stream().map(User::getUserName).toList(), new ArrayList<>(locations.keySet()));
+        for (User user : users) {
+            assertEquals(user.getLastVisitedLocation().location.latitude, locations.get(user.getUserName()).location.latitude);
+            assertEquals(user.getUserId(), locations.get(user.getUserName()).userId);
+        }
+    }
+
     @Test
     public void trackUser() {
         GpsUtil gpsUtil = new GpsUtil();
@@ -96,6 +171,49 @@ public class TestTourGuideService {
         assertEquals(user.getUserId(), visitedLocation.userId);
     }
 
+    @Test
+    public void trackUserConcurrentlyCallsGpsUtilOnce() {
+        AtomicInteger gpsCalls = new AtomicInteger();
+        GpsUtil gpsUtil = new GpsUtil() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                gpsCalls.incrementAndGet();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new VisitedLocation(userId, new Location(33.817595, -117.922008), new Date());
+            }
+        };
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+        tourGuideService.tracker.stopTracking();
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        List<CompletableFuture<VisitedLocation>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return tourGuideService.trackUserLocation(user);
+            }, executor));
+        }
+        start.countDown();
+        List<VisitedLocation> visitedLocations = futures.stream().map(CompletableFuture::join).toList();
+        executor.shutdown();
+
+        assertEquals(1, gpsCalls.get());
+        assertEquals(1, user.getVisitedLocations().size());
+        visitedLocations.forEach(visitedLocation -> assertSame(visitedLocations.get(0), visitedLocation));
+    }
+
     @Test
     public void trackUsers() {
         GpsUtil gpsUtil = new GpsUtil();
@@ -118,6 +236,65 @@ public class TestTourGuideService {
 
     }
 
+    @Test
+    public void trackUsersReportsBothStages() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+        List<User> allUsers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            allUsers.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+        }
+
+        TrackingPipeline.Stats stats = tourGuideService.trackUsersLocation(allUsers);
+
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(20, stats.getFetch().getProcessed());
+        assertEquals(20, stats.getReward().getProcessed());
+        assertEquals(0, stats.getFailed());
+        allUsers.forEach(u -> assertEquals(1, u.getVisitedLocations().size()));
+    }
+
+    @Test
+    public void trackUsersEndsWhenAStageThrowsAnError() {
+        GpsUtil gpsUtil = new GpsUtil() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                if (userId.getLeastSignificantBits() == 1) {
+                    throw new Error("gpsUtil");
+                }
+                return new VisitedLocation(userId, new Location(33.817595, -117.922008), new Date());
+            }
+        };
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral()) {
+            @Override
+            public void calculateRewards(User user) {
+                if (user.getUserId().getLeastSignificantBits() == 2) {
+                    throw new Error("rewardCentral");
+                }
+            }
+        };
+        TrackingPipeline trackingPipeline = new TrackingPipeline(gpsUtil, rewardsService, UserJournal.disabled(),
+                LocationUpdatePublisher.disabled(), TourGuideExecutors.defaultTrackingExecutor(),
+                TourGuideExecutors.defaultTrackerRewardsExecutor(), 2, 2);
+
+        List<User> allUsers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            allUsers.add(new User(new UUID(0, i), "user" + i, "000", "user" + i + "@tourGuide.com"));
+        }
+        TrackingPipeline.Stats stats = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> trackingPipeline.run(allUsers));
+
+        // each Error fails its User only, the permits are given back and the run ends
+        assertEquals(2, stats.getFailed());
+        assertEquals(8, stats.getReward().getProcessed());
+        assertEquals(0, trackingPipeline.getPendingUsers());
+        assertEquals(0, trackingPipeline.getQueueDepth());
+    }
+
     @Test
     public void getNearbyAttractions() {
         GpsUtil gpsUtil = new GpsUtil();
@@ -155,6 +332,107 @@ public class TestTourGuideService {
         assertEquals("Fallingwater", attractions.get(4).attractionName);
     }
 
+    @Test
+    public void cachedPointsDoNotWaitForASaturatedPointsExecutor() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        AtomicInteger rewardCentralCalls = new AtomicInteger();
+        CachedRewardCentral rewardCentral = new CachedRewardCentral(new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                rewardCentralCalls.incrementAndGet();
+                return 7;
+            }
+        }, 100, Duration.ofMinutes(1), Runnable::run, new SimpleMeterRegistry());
+        ExecutorService saturated = TourGuideExecutors.newBestEffortPool("test-points", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            saturated.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideServiceBuilder(gpsUtil, rewardsService)
+                .rewardCentral(rewardCentral)
+                .pointsFanOut(new DeadlineFanOut(saturated, 5000))
+                .build();
+        tourGuideService.tracker.stopTracking();
+
+        VisitedLocation visitedLocation = new VisitedLocation(UUID.randomUUID(), new Location(10, 10), new Date());
+        List<Attraction> attractions = tourGuideService.getNearByAttractions(visitedLocation);
+        for (int i = 0; i < 3; i++) {
+            rewardCentral.getAttractionRewardPoints(attractions.get(i).attractionId, visitedLocation.userId);
+        }
+        NearbyAttractionsDTO dto;
+        try {
+            dto = tourGuideService.getNearbyAttractionsDTO(visitedLocation);
+        } finally {
+            release.countDown();
+            saturated.shutdown();
+        }
+
+        // the cached points are read inline, only the two missing ones are rejected by the points executor
+        assertEquals(List.of(7, 7, 7, AttractionDTO.UNKNOWN_REWARD, AttractionDTO.UNKNOWN_REWARD),
+                dto.getAttractions().stream().map(AttractionDTO::getReward).toList());
+        assertEquals(3, rewardCentralCalls.get());
+    }
+
+    @Test
+    public void restartTwiceWithJournalAndSnapshot(@TempDir Path directory) throws IOException {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        Path snapshotFile = directory.resolve("users.snapshot");
+        InternalTestHelper.setInternalUserNumber(5);
+
+        // a run with the snapshot only
+        TourGuideService generated = new TourGuideServiceBuilder(gpsUtil, rewardsService).build();
+        generated.tracker.stopTracking();
+        User rewarded = generated.getAllUsers().get(0);
+        Attraction attraction = gpsUtil.getAttractions().get(3);
+        rewarded.addUserReward(new UserReward(rewarded.getLastVisitedLocation(), attraction, 300));
+        new UserSnapshot(snapshotFile, 0).write(generated.getAllUsers());
+
+        // the journal is enabled: the users are restored from the snapshot
+        MappedUserJournal journal = new MappedUserJournal(directory.resolve("journal"));
+        TourGuideService restored = new TourGuideServiceBuilder(gpsUtil, rewardsService)
+                .userJournal(journal)
+                .userSnapshot(new UserSnapshot(snapshotFile, 0))
+                .build();
+        restored.tracker.stopTracking();
+        assertEquals(5, restored.getAllUsers().size());
+        User tracked = restored.getUser(rewarded.getUserName());
+        VisitedLocation visitedLocation = restored.trackUserLocation(tracked);
+        restored.addUser(new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com"));
+        journal.close();
+
+        // the journal is not empty: the users are replayed from it
+        MappedUserJournal reopened = new MappedUserJournal(directory.resolve("journal"));
+        TourGuideService replayed = new TourGuideServiceBuilder(gpsUtil, rewardsService)
+                .userJournal(reopened)
+                .userSnapshot(new UserSnapshot(snapshotFile, 0))
+                .build();
+        replayed.tracker.stopTracking();
+        reopened.close();
+
+        assertEquals(6, replayed.getAllUsers().size());
+        assertNotNull(replayed.getUser("jon"));
+        for (User user : generated.getAllUsers()) {
+            User replayedUser = replayed.getUser(user.getUserName());
+            assertNotNull(replayedUser);
+            assertEquals(user.getUserId(), replayedUser.getUserId());
+            assertTrue(replayedUser.getVisitedLocations().size() >= user.getVisitedLocations().size());
+        }
+        User replayedTracked = replayed.getUser(rewarded.getUserName());
+        assertTrue(replayedTracked.getVisitedLocations().stream().anyMatch(location ->
+                location.location.latitude == visitedLocation.location.latitude
+                        && location.location.longitude == visitedLocation.location.longitude));
+        assertTrue(replayedTracked.hasUserReward(attraction.attractionName));
+    }
+
     public void getTripDeals() {
         GpsUtil gpsUtil = new GpsUtil();
         RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
@@ -0,0 +1,60 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackingSchedule;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.GpsUtil;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTrackingSchedule {
+
+    @Test
+    public void slotsStayBalanced() {
+        TrackingSchedule trackingSchedule = new TrackingSchedule(60);
+        for (int i = 0; i < 10000; i++) {
+            trackingSchedule.register(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+        }
+
+        int min = IntStream.range(0, 60).map(trackingSchedule::getLoad).min().getAsInt();
+        int max = IntStream.range(0, 60).map(trackingSchedule::getLoad).max().getAsInt();
+        int total = IntStream.range(0, 60).map(trackingSchedule::getLoad).sum();
+
+        assertEquals(10000, total);
+        assertTrue(max - min <= 2, "slots between " + min + " and " + max + " users");
+    }
+
+    @Test
+    public void registerIsIdempotent() {
+        TrackingSchedule trackingSchedule = new TrackingSchedule(10);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        int slot = trackingSchedule.register(user);
+
+        assertEquals(slot, trackingSchedule.register(user));
+        assertEquals(1, trackingSchedule.size());
+        assertEquals(1, trackingSchedule.getUsers(slot).size());
+    }
+
+    @Test
+    public void addUserIsScheduled() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(5);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+        tourGuideService.addUser(new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com"));
+
+        tourGuideService.tracker.stopTracking();
+
+        assertEquals(6, tourGuideService.tracker.getTrackingSchedule().size());
+    }
+}
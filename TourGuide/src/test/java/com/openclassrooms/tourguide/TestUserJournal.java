@@ -0,0 +1,234 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.persistence.MappedUserJournal;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUserJournal {
+    private static final List<Attraction> attractions = new GpsUtil().getAttractions();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void replayRestoresUsers() throws IOException {
+        MappedUserJournal journal = new MappedUserJournal(directory, 16, 100, 1000);
+        User user = new User(UUID.randomUUID(), "jon", "000", "a-rather-long-email-address-for-jon@tourGuide.com");
+        journal.appendUser(user);
+        for (int i = 0; i < 40; i++) {
+            journal.appendLocation(user.getUserId(), new VisitedLocation(user.getUserId(), new Location(i, -i), new Date(i)));
+        }
+        VisitedLocation rewarded = new VisitedLocation(user.getUserId(), new Location(1, 2), null);
+        journal.appendReward(user.getUserId(), rewarded, attractions.get(3).attractionName, 250);
+        journal.appendReward(user.getUserId(), rewarded, attractions.get(3).attractionName, 100);
+        journal.close();
+
+        MappedUserJournal reopened = new MappedUserJournal(directory, 16, 100, 1000);
+        List<User> users = reopened.replay(attractions);
+        reopened.close();
+
+        assertEquals(1, users.size());
+        User replayed = users.get(0);
+        assertEquals(user.getUserId(), replayed.getUserId());
+        assertEquals("jon", replayed.getUserName());
+        assertEquals("000", replayed.getPhoneNumber());
+        assertEquals(user.getEmailAddress(), replayed.getEmailAddress());
+        assertEquals(40, replayed.getVisitedLocations().size());
+        assertEquals(39.0, replayed.getLastVisitedLocation().location.latitude);
+        assertEquals(39, replayed.getLastVisitedLocation().timeVisited.getTime());
+
+        assertEquals(1, replayed.getUserRewards().size());
+        UserReward userReward = replayed.getUserRewards().get(0);
+        assertEquals(attractions.get(3).attractionName, userReward.attraction.attractionName);
+        assertEquals(250, userReward.getRewardPoints());
+        assertNull(userReward.visitedLocation.timeVisited);
+    }
+
+    @Test
+    public void rewardsAreReplayedByAttractionName() throws IOException {
+        MappedUserJournal journal = new MappedUserJournal(directory, 16, 100, 1000);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        journal.appendUser(user);
+        VisitedLocation rewarded = new VisitedLocation(user.getUserId(), new Location(1, 2), null);
+        journal.appendReward(user.getUserId(), rewarded, attractions.get(3).attractionName, 250);
+        journal.appendReward(user.getUserId(), rewarded, attractions.get(4).attractionName, 100);
+        journal.close();
+
+        // the catalog of the next start has the attractions in another order, and without the fifth one
+        List<Attraction> reloaded = new ArrayList<>(attractions);
+        reloaded.remove(4);
+        Collections.reverse(reloaded);
+        MappedUserJournal reopened = new MappedUserJournal(directory, 16, 100, 1000);
+        List<User> users = reopened.replay(reloaded);
+        reopened.close();
+
+        assertEquals(1, users.get(0).getUserRewards().size());
+        UserReward userReward = users.get(0).getUserRewards().get(0);
+        assertEquals(attractions.get(3).attractionName, userReward.attraction.attractionName);
+        assertEquals(250, userReward.getRewardPoints());
+    }
+
+    @Test
+    public void compactionKeepsEveryLocation() throws IOException {
+        MappedUserJournal journal = new MappedUserJournal(directory, 64, 2, 1000);
+        List<User> users = Stream.of("a", "b", "c")
+                .map(name -> new User(UUID.randomUUID(), name, "000", name + "@tourGuide.com"))
+                .collect(Collectors.toList());
+        users.forEach(journal::appendUser);
+        for (int i = 0; i < 500; i++) {
+            for (User user : users) {
+                journal.appendLocation(user.getUserId(), new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i)));
+            }
+            // users added again only repeat their fields, compaction keeps a single copy
+            if (i % 100 == 0) {
+                users.forEach(journal::appendUser);
+            }
+        }
+        journal.close();
+
+        // the replay on startup compacts the segments of the previous run
+        MappedUserJournal reopened = new MappedUserJournal(directory, 64, 2, 1000);
+        Map<String, User> replayed = reopened.replay(attractions).stream()
+                .collect(Collectors.toMap(User::getUserName, Function.identity()));
+        reopened.close();
+        MappedUserJournal compacted = new MappedUserJournal(directory, 64, 2, 1000);
+        Map<String, User> afterCompaction = compacted.replay(attractions).stream()
+                .collect(Collectors.toMap(User::getUserName, Function.identity()));
+        compacted.close();
+
+        for (Map<String, User> result : List.of(replayed, afterCompaction)) {
+            assertEquals(3, result.size());
+            for (User user : users) {
+                User restored = result.get(user.getUserName());
+                assertEquals(user.getUserId(), restored.getUserId());
+                assertEquals(500, restored.getVisitedLocations().size());
+                for (int i = 0; i < 500; i++) {
+                    assertEquals(i, restored.getVisitedLocations().get(i).timeVisited.getTime());
+                }
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() <= 3);
+        }
+    }
+
+    @Test
+    public void closedSegmentHoldsOnlyItsRecords() throws IOException {
+        MappedUserJournal journal = new MappedUserJournal(directory, 1024, 100, 1000);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        journal.appendUser(user);
+        for (int i = 0; i < 10; i++) {
+            journal.appendLocation(user.getUserId(), new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i)));
+        }
+        journal.close();
+        MappedUserJournal reopened = new MappedUserJournal(directory, 1024, 100, 1000);
+        reopened.appendLocation(user.getUserId(), new VisitedLocation(user.getUserId(), new Location(10, 10), new Date(10)));
+        reopened.close();
+
+        // three user records and ten locations, then the location of the second run
+        List<Long> sizes;
+        try (Stream<Path> files = Files.list(directory)) {
+            sizes = files.sorted().map(path -> path.toFile().length()).toList();
+        }
+        assertEquals(List.of(13L * 64, 64L), sizes);
+        MappedUserJournal replayed = new MappedUserJournal(directory, 1024, 100, 1000);
+        List<User> users = replayed.replay(attractions);
+        replayed.close();
+        assertEquals(11, users.get(0).getVisitedLocations().size());
+    }
+
+    @Test
+    public void appendsRacingCloseAreWrittenOrCounted() throws Exception {
+        // a queue of 4 records keeps the appending threads waiting for the writer when close is called
+        MappedUserJournal journal = new MappedUserJournal(directory, 1024, 100, 4);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        journal.appendUser(user);
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                while (!stop.get()) {
+                    int n = attempts.incrementAndGet();
+                    journal.appendLocation(user.getUserId(),
+                            new VisitedLocation(user.getUserId(), new Location(0, 0), new Date(n)));
+                }
+            }));
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+        journal.close();
+        stop.set(true);
+        for (Future<?> future : futures) {
+            // no append waits forever for a writer that is gone
+            future.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        MappedUserJournal reopened = new MappedUserJournal(directory, 1024, 100, 1000);
+        List<User> users = reopened.replay(attractions);
+        reopened.close();
+
+        assertTrue(journal.getDroppedRecords() > 0);
+        assertEquals(attempts.get(), users.get(0).getVisitedLocations().size() + journal.getDroppedRecords());
+    }
+
+    @Test
+    public void corruptedRecordIsSkipped() throws IOException {
+        MappedUserJournal journal = new MappedUserJournal(directory, 1024, 100, 1000);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        journal.appendUser(user);
+        for (int i = 0; i < 10; i++) {
+            journal.appendLocation(user.getUserId(), new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i)));
+        }
+        journal.close();
+
+        // the fifth location record: after the three user records and four locations
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.max(Comparator.naturalOrder()).orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(7 * 64 + 30);
+            file.write(0x55);
+        }
+
+        MappedUserJournal reopened = new MappedUserJournal(directory, 1024, 100, 1000);
+        List<User> users = reopened.replay(attractions);
+        reopened.close();
+
+        assertEquals(9, users.get(0).getVisitedLocations().size());
+        assertEquals(5, users.get(0).getVisitedLocations().get(4).timeVisited.getTime());
+    }
+}
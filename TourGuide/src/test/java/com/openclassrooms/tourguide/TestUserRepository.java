@@ -0,0 +1,64 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.repository.UserRepository;
+import com.openclassrooms.tourguide.user.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUserRepository {
+
+    @Test
+    public void getUserByNameAndById() {
+        UserRepository userRepository = new InMemoryUserRepository();
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        User sameName = new User(UUID.randomUUID(), "jon", "000", "jon2@tourGuide.com");
+
+        assertTrue(userRepository.addUser(user));
+        assertFalse(userRepository.addUser(sameName));
+
+        assertSame(user, userRepository.getUser("jon"));
+        assertSame(user, userRepository.getUserById(user.getUserId()));
+        assertNull(userRepository.getUserById(sameName.getUserId()));
+        assertEquals(1, userRepository.size());
+    }
+
+    @Test
+    public void concurrentAddUser() {
+        UserRepository userRepository = new InMemoryUserRepository();
+
+        IntStream.range(0, 10000).parallel().forEach(i ->
+                userRepository.addUser(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com")));
+
+        assertEquals(10000, userRepository.size());
+        assertEquals(10000, userRepository.getAllUsers().size());
+        assertEquals(10000, userRepository.stream().parallel().map(User::getUserId).distinct().count());
+    }
+
+    @Test
+    public void iterationToleratesConcurrentAdd() {
+        UserRepository userRepository = new InMemoryUserRepository();
+        IntStream.range(0, 100).forEach(i ->
+                userRepository.addUser(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com")));
+
+        int seen = 0;
+        Iterator<User> iterator = userRepository.users().iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            userRepository.addUser(new User(UUID.randomUUID(), "added" + seen, "000", "added" + seen + "@tourGuide.com"));
+            seen++;
+        }
+
+        assertTrue(seen >= 100);
+        assertEquals(100 + seen, userRepository.size());
+    }
+}
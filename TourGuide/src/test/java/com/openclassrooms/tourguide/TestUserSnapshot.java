@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.persistence.UserSnapshot;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUserSnapshot {
+    private static final List<Attraction> attractions = new GpsUtil().getAttractions();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void restoreUsers() throws IOException {
+        User user = new User(UUID.randomUUID(), "jon", null, "jon@tourGuide.com");
+        user.getUserPreferences().setTripDuration(7);
+        user.getUserPreferences().setNumberOfChildren(2);
+        user.setLatestLocationTimestamp(new Date(1234));
+        for (int i = 0; i < 10; i++) {
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, -i), new Date(i)));
+        }
+        Attraction attraction = attractions.get(5);
+        user.addUserReward(new UserReward(new VisitedLocation(user.getUserId(), attraction, null), attraction, 420));
+
+        UserSnapshot userSnapshot = new UserSnapshot(directory.resolve("users.snapshot"), 0);
+        assertFalse(userSnapshot.exists());
+        assertEquals(1, userSnapshot.write(List.of(user)));
+        List<User> users = userSnapshot.read(attractions);
+
+        assertEquals(1, users.size());
+        User restored = users.get(0);
+        assertEquals(user.getUserId(), restored.getUserId());
+        assertEquals("jon", restored.getUserName());
+        assertNull(restored.getPhoneNumber());
+        assertEquals("jon@tourGuide.com", restored.getEmailAddress());
+        assertEquals(1234, restored.getLatestLocationTimestamp().getTime());
+        assertEquals(7, restored.getUserPreferences().getTripDuration());
+        assertEquals(2, restored.getUserPreferences().getNumberOfChildren());
+        assertEquals(10, restored.getVisitedLocations().size());
+        assertEquals(-9.0, restored.getLastVisitedLocation().location.longitude);
+        assertEquals(9, restored.getLastVisitedLocation().timeVisited.getTime());
+        assertEquals(1, restored.getUserRewards().size());
+        assertEquals(attraction.attractionName, restored.getUserRewards().get(0).attraction.attractionName);
+        assertEquals(420, restored.getUserRewards().get(0).getRewardPoints());
+        assertTrue(restored.hasUserReward(attraction.attractionName));
+    }
+
+    @Test
+    public void writeWhileUsersAreTracked() throws IOException {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 1), new Date()));
+            users.add(user);
+        }
+        AtomicBoolean tracking = new AtomicBoolean(true);
+        CompletableFuture<Void> tracker = CompletableFuture.runAsync(() -> {
+            while (tracking.get()) {
+                for (User user : users) {
+                    user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(2, 2), new Date()));
+                }
+            }
+        });
+
+        UserSnapshot userSnapshot = new UserSnapshot(directory.resolve("users.snapshot"), 0);
+        userSnapshot.write(users);
+        tracking.set(false);
+        tracker.join();
+
+        List<User> restored = userSnapshot.read(attractions);
+        assertEquals(10000, restored.size());
+        for (int i = 0; i < restored.size(); i++) {
+            assertEquals(users.get(i).getUserId(), restored.get(i).getUserId());
+            assertFalse(restored.get(i).getVisitedLocations().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.cache.CachedRewardCentral;
+import com.openclassrooms.tourguide.executor.BoundedFanOut;
+import com.openclassrooms.tourguide.executor.DeadlineFanOut;
+import com.openclassrooms.tourguide.executor.TourGuideExecutors;
+import com.openclassrooms.tourguide.persistence.UserJournal;
+import com.openclassrooms.tourguide.persistence.UserSnapshot;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.LocationUpdatePublisher;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
+import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
+
+/**
+ * Build a TourGuideService with the constructor used by Spring, for the tests that need more than the gpsUtil and
+ * the RewardsService. Every collaborator not set has the default of the two arguments constructor.
+ */
+class TourGuideServiceBuilder {
+    private final GpsUtil gpsUtil;
+    private final RewardsService rewardsService;
+    private TrackingPipeline trackingPipeline;
+    private UserJournal userJournal = UserJournal.disabled();
+    private UserSnapshot userSnapshot = UserSnapshot.disabled();
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+    private CachedRewardCentral rewardCentral;
+    private DeadlineFanOut pointsFanOut;
+
+    TourGuideServiceBuilder(GpsUtil gpsUtil, RewardsService rewardsService) {
+        this.gpsUtil = gpsUtil;
+        this.rewardsService = rewardsService;
+    }
+
+    TourGuideServiceBuilder trackingPipeline(TrackingPipeline trackingPipeline) {
+        this.trackingPipeline = trackingPipeline;
+        return this;
+    }
+
+    TourGuideServiceBuilder userJournal(UserJournal userJournal) {
+        this.userJournal = userJournal;
+        return this;
+    }
+
+    TourGuideServiceBuilder userSnapshot(UserSnapshot userSnapshot) {
+        this.userSnapshot = userSnapshot;
+        return this;
+    }
+
+    TourGuideServiceBuilder meterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        return this;
+    }
+
+    TourGuideServiceBuilder rewardCentral(CachedRewardCentral rewardCentral) {
+        this.rewardCentral = rewardCentral;
+        return this;
+    }
+
+    TourGuideServiceBuilder pointsFanOut(DeadlineFanOut pointsFanOut) {
+        this.pointsFanOut = pointsFanOut;
+        return this;
+    }
+
+    TourGuideService build() {
+        TrackingPipeline pipeline = trackingPipeline != null ? trackingPipeline : new TrackingPipeline(gpsUtil,
+                rewardsService, userJournal, LocationUpdatePublisher.disabled(),
+                TourGuideExecutors.defaultTrackingExecutor(), TourGuideExecutors.defaultTrackerRewardsExecutor(),
+                TrackingPipeline.DEFAULT_REWARD_WORKERS, TrackingPipeline.DEFAULT_QUEUE_CAPACITY);
+        CachedRewardCentral points = rewardCentral != null ? rewardCentral : new CachedRewardCentral(
+                new RewardCentral(), CachedRewardCentral.DEFAULT_MAXIMUM_SIZE,
+                CachedRewardCentral.DEFAULT_EXPIRE_AFTER_WRITE, TourGuideExecutors.defaultPrefetchExecutor(),
+                meterRegistry);
+        DeadlineFanOut fanOut = pointsFanOut != null ? pointsFanOut : new DeadlineFanOut(
+                TourGuideExecutors.defaultPointsExecutor(), DeadlineFanOut.DEFAULT_TIMEOUT_MILLIS);
+        return new TourGuideService(rewardsService, pipeline, new InMemoryUserRepository(), userJournal, userSnapshot,
+                new TripPricer(), meterRegistry, new BoundedFanOut(TourGuideExecutors.defaultTrackingExecutor(),
+                BoundedFanOut.DEFAULT_PARALLELISM), points, fanOut);
+    }
+}